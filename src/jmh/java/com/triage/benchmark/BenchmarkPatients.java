@@ -0,0 +1,42 @@
+package com.triage.benchmark;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.rules.SymptomCatalogue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic patients built from the symptoms in the generated rules, so every
+ * benchmark run evaluates the same inputs.
+ */
+final class BenchmarkPatients {
+
+    static final String DRL_PATH = "generated_rules/triage.drl";
+    static final String PDF_PATH = "spec/national-emergency-medicine-programme-irish-childrens-triage-system-icts.pdf";
+
+    private BenchmarkPatients() {
+    }
+
+    static List<Patient> create(int count, int symptomsPerPatient) throws IOException {
+        List<String> names = new ArrayList<>(SymptomCatalogue.load(new File(DRL_PATH)).getSymptoms());
+        if (names.isEmpty()) {
+            throw new IllegalStateException("No symptoms found in " + DRL_PATH + ", generate the rules first");
+        }
+
+        Random random = new Random(42);
+        List<Patient> patients = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Patient patient = new Patient("BENCH_" + i, 1 + random.nextInt(15));
+            for (int j = 0; j < symptomsPerPatient; j++) {
+                patient.addSymptom(new Symptom(names.get(random.nextInt(names.size()))));
+            }
+            patients.add(patient);
+        }
+        return patients;
+    }
+}
@@ -0,0 +1,40 @@
+package com.triage.benchmark;
+
+import com.triage.rules.TriageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to a usable {@link TriageEngine}, compiling the DRL versus loading the
+ * precompiled KieBase. Single-shot so every measurement is a real start-up.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(3)
+@State(Scope.Benchmark)
+public class EngineInitBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean precompiled;
+
+    @Benchmark
+    public TriageEngine init() {
+        TriageEngine engine = new TriageEngine();
+        engine.setDrlPath(BenchmarkPatients.DRL_PATH);
+        engine.setUsePrecompiled(precompiled);
+        engine.init();
+        return engine;
+    }
+}
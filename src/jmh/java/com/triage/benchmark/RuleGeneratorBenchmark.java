@@ -0,0 +1,55 @@
+package com.triage.benchmark;
+
+import com.triage.rules.TriageRuleGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link TriageRuleGenerator#generate} against the bundled ICTS PDF,
+ * writing to a scratch file so the real rules are left alone.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleGeneratorBenchmark {
+
+    private Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (!new File(BenchmarkPatients.PDF_PATH).exists()) {
+            throw new IllegalStateException("Source PDF not found at " + BenchmarkPatients.PDF_PATH);
+        }
+        output = Files.createTempFile("triage-bench", ".drl");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public File generate() throws IOException {
+        new TriageRuleGenerator().generate(BenchmarkPatients.PDF_PATH, output.toString());
+        return output.toFile();
+    }
+}
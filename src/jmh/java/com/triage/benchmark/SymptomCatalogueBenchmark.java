@@ -0,0 +1,55 @@
+package com.triage.benchmark;
+
+import com.triage.config.TriageProperties;
+import com.triage.rules.SymptomCatalogue;
+import com.triage.service.RuleGenerationService;
+import com.triage.service.TriageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serving GET /api/symptoms: reading the catalogue from triage.drl
+ * versus the copy held by {@link TriageService}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SymptomCatalogueBenchmark {
+
+    private TriageService service;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TriageProperties properties = new TriageProperties();
+        service = new TriageService(new RuleGenerationService(properties), properties, new SimpleMeterRegistry());
+        service.getSymptomCatalogue();
+    }
+
+    @Benchmark
+    public SymptomCatalogue loadFromDrl() throws IOException {
+        return SymptomCatalogue.load(new File(BenchmarkPatients.DRL_PATH));
+    }
+
+    @Benchmark
+    public Set<String> cachedLookup() {
+        return service.getAvailableSymptoms();
+    }
+}
@@ -0,0 +1,68 @@
+package com.triage.benchmark;
+
+import com.triage.model.Patient;
+import com.triage.model.TriageResult;
+import com.triage.rules.EngineMode;
+import com.triage.rules.SessionStrategy;
+import com.triage.rules.TriageEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-patient cost of {@link TriageEngine#executeTriage} for 1, 5 and 20 symptoms
+ * across engine modes and session strategies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TriageEngineBenchmark {
+
+    private static final int PATIENTS = 256;
+
+    @Param({ "1", "5", "20" })
+    public int symptoms;
+
+    @Param({ "DROOLS", "INDEXED" })
+    public EngineMode mode;
+
+    @Param({ "PER_REQUEST", "STATELESS", "POOLED" })
+    public SessionStrategy sessionStrategy;
+
+    private TriageEngine engine;
+    private List<Patient> patients;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        engine = new TriageEngine();
+        engine.setDrlPath(BenchmarkPatients.DRL_PATH);
+        engine.setMode(mode);
+        engine.setSessionStrategy(sessionStrategy);
+        engine.init();
+        patients = BenchmarkPatients.create(PATIENTS, symptoms);
+    }
+
+    @Benchmark
+    public TriageResult executeTriage() {
+        Patient patient = patients.get(next);
+        next = (next + 1) % PATIENTS;
+        return engine.executeTriage(patient);
+    }
+}
@@ -5,19 +5,25 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.context.ConfigurableApplicationContext;
 import java.awt.EventQueue;
+import java.awt.GraphicsEnvironment;
 
 @SpringBootApplication
 public class TriageApplication {
 
     public static void main(String[] args) {
         SpringApplicationBuilder builder = new SpringApplicationBuilder(TriageApplication.class);
-        builder.headless(false); // Important for GUI
+        // Keep AWT usable for the GUI when there is a display; without one (or
+        // with -Djava.awt.headless=true) run as a server, which PDFBox needs too
+        boolean headless = GraphicsEnvironment.isHeadless();
+        builder.headless(headless);
         ConfigurableApplicationContext context = builder.run(args);
 
-        // Launch GUI
-        EventQueue.invokeLater(() -> {
-            TriageGUI gui = context.getBean(TriageGUI.class);
-            gui.setVisible(true);
-        });
+        if (headless) {
+            System.out.println("No display available, running without the GUI");
+            return;
+        }
+        // Launch GUI, unless disabled with triage.gui.enabled=false
+        context.getBeanProvider(TriageGUI.class)
+                .ifAvailable(gui -> EventQueue.invokeLater(() -> gui.setVisible(true)));
     }
 }
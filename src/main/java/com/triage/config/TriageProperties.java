@@ -0,0 +1,326 @@
+package com.triage.config;
+
+import com.triage.rules.DrlLayout;
+import com.triage.rules.EngineMode;
+import com.triage.rules.EvaluatorType;
+import com.triage.rules.SessionStrategy;
+import com.triage.service.FsyncPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings bound from the {@code triage.*} keys in application.properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "triage")
+public class TriageProperties {
+
+    private final Engine engine = new Engine();
+    private final Generator generator = new Generator();
+    private final Admission admission = new Admission();
+    private final Cache cache = new Cache();
+    private final Trace trace = new Trace();
+    private final Profile profile = new Profile();
+    private final Journal journal = new Journal();
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public Generator getGenerator() {
+        return generator;
+    }
+
+    public Admission getAdmission() {
+        return admission;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Trace getTrace() {
+        return trace;
+    }
+
+    public Profile getProfile() {
+        return profile;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public static class Journal {
+        private boolean enabled = true;
+        private String directory = "journal";
+        private FsyncPolicy fsync = FsyncPolicy.ALWAYS;
+        private long fsyncIntervalMillis = 100;
+        private long segmentBytes = 64L * 1024 * 1024;
+        private int maxPending = 100_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public FsyncPolicy getFsync() {
+            return fsync;
+        }
+
+        public void setFsync(FsyncPolicy fsync) {
+            this.fsync = fsync;
+        }
+
+        public long getFsyncIntervalMillis() {
+            return fsyncIntervalMillis;
+        }
+
+        public void setFsyncIntervalMillis(long fsyncIntervalMillis) {
+            this.fsyncIntervalMillis = fsyncIntervalMillis;
+        }
+
+        public long getSegmentBytes() {
+            return segmentBytes;
+        }
+
+        public void setSegmentBytes(long segmentBytes) {
+            this.segmentBytes = segmentBytes;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    public static class Profile {
+        private boolean enabled = false;
+        private String snapshotFile = "generated_rules/triage.profile.json";
+        private long snapshotIntervalSeconds = 300;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getSnapshotFile() {
+            return snapshotFile;
+        }
+
+        public void setSnapshotFile(String snapshotFile) {
+            this.snapshotFile = snapshotFile;
+        }
+
+        public long getSnapshotIntervalSeconds() {
+            return snapshotIntervalSeconds;
+        }
+
+        public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+            this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+        }
+    }
+
+    public static class Trace {
+        private double sampleRate = 0;
+        private int maxRules = 128;
+
+        public double getSampleRate() {
+            return sampleRate;
+        }
+
+        public void setSampleRate(double sampleRate) {
+            this.sampleRate = sampleRate;
+        }
+
+        public int getMaxRules() {
+            return maxRules;
+        }
+
+        public void setMaxRules(int maxRules) {
+            this.maxRules = maxRules;
+        }
+    }
+
+    public static class Cache {
+        private boolean enabled = true;
+        private long maximumSize = 10_000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+    }
+
+    public static class Admission {
+        private int maxConcurrent = Runtime.getRuntime().availableProcessors();
+        private int maxQueued = 200;
+        private long queueTimeoutMillis = 2000;
+        private int retryAfterSeconds = 1;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public long getQueueTimeoutMillis() {
+            return queueTimeoutMillis;
+        }
+
+        public void setQueueTimeoutMillis(long queueTimeoutMillis) {
+            this.queueTimeoutMillis = queueTimeoutMillis;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+
+    public static class Generator {
+        private DrlLayout layout = DrlLayout.PER_SYMPTOM;
+        private boolean prioritized = false;
+        private boolean flowchartScoped = false;
+        private String profileFile = "";
+
+        public DrlLayout getLayout() {
+            return layout;
+        }
+
+        public void setLayout(DrlLayout layout) {
+            this.layout = layout;
+        }
+
+        public boolean isPrioritized() {
+            return prioritized;
+        }
+
+        public void setPrioritized(boolean prioritized) {
+            this.prioritized = prioritized;
+        }
+
+        public boolean isFlowchartScoped() {
+            return flowchartScoped;
+        }
+
+        public void setFlowchartScoped(boolean flowchartScoped) {
+            this.flowchartScoped = flowchartScoped;
+        }
+
+        public String getProfileFile() {
+            return profileFile;
+        }
+
+        public void setProfileFile(String profileFile) {
+            this.profileFile = profileFile;
+        }
+    }
+
+    public static class Engine {
+        private EvaluatorType evaluator = EvaluatorType.DROOLS;
+        private EngineMode mode = EngineMode.DROOLS;
+        private SessionStrategy sessionStrategy = SessionStrategy.PER_REQUEST;
+        private int poolSize = Runtime.getRuntime().availableProcessors();
+        private long patientSessionIdleMinutes = 60;
+        private long maxPatientSessions = 10_000;
+        private boolean precompiled = true;
+
+        public EvaluatorType getEvaluator() {
+            return evaluator;
+        }
+
+        public void setEvaluator(EvaluatorType evaluator) {
+            this.evaluator = evaluator;
+        }
+
+        public EngineMode getMode() {
+            return mode;
+        }
+
+        public void setMode(EngineMode mode) {
+            this.mode = mode;
+        }
+
+        public SessionStrategy getSessionStrategy() {
+            return sessionStrategy;
+        }
+
+        public void setSessionStrategy(SessionStrategy sessionStrategy) {
+            this.sessionStrategy = sessionStrategy;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public void setPoolSize(int poolSize) {
+            this.poolSize = poolSize;
+        }
+
+        public long getPatientSessionIdleMinutes() {
+            return patientSessionIdleMinutes;
+        }
+
+        public void setPatientSessionIdleMinutes(long patientSessionIdleMinutes) {
+            this.patientSessionIdleMinutes = patientSessionIdleMinutes;
+        }
+
+        public long getMaxPatientSessions() {
+            return maxPatientSessions;
+        }
+
+        public void setMaxPatientSessions(long maxPatientSessions) {
+            this.maxPatientSessions = maxPatientSessions;
+        }
+
+        public boolean isPrecompiled() {
+            return precompiled;
+        }
+
+        public void setPrecompiled(boolean precompiled) {
+            this.precompiled = precompiled;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.triage.controller;
+
+import com.triage.rules.RuleProfile;
+import com.triage.service.RuleGenerationJob;
+import com.triage.service.RuleGenerationJobService;
+import com.triage.service.RuleProfileService;
+import com.triage.service.TriageService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/rules")
+public class RuleController {
+
+    private static final String PROFILING_OFF = "Rule profiling is off. Set triage.profile.enabled=true to count rule fires.";
+
+    private final TriageService triageService;
+    private final RuleGenerationJobService jobService;
+    private final RuleProfileService profileService;
+
+    public RuleController(TriageService triageService, RuleGenerationJobService jobService,
+            RuleProfileService profileService) {
+        this.triageService = triageService;
+        this.jobService = jobService;
+        this.profileService = profileService;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("initialized", triageService.isInitialized());
+        status.put("version", triageService.getRulesVersion());
+        status.put("hash", triageService.getRulesHash());
+        Exception error = triageService.getLastReloadError();
+        status.put("lastReloadError", error != null ? error.getMessage() : null);
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Recompile triage.drl in the background; the current rules keep serving
+     * until the new ones are built, and stay in place if the build fails.
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<?> reload() {
+        triageService.reloadAsync();
+        return ResponseEntity.accepted().body("Reload started. Poll GET /api/rules for the new version.");
+    }
+
+    /**
+     * Regenerate the rules from the PDF and load them, in the background. While
+     * a job is queued or running, every trigger gets that job back.
+     */
+    @PostMapping("/generate")
+    public ResponseEntity<RuleGenerationJob> generate() {
+        RuleGenerationJob job = jobService.start();
+        return ResponseEntity.accepted().location(URI.create("/api/rules/jobs/" + job.getId())).body(job);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<RuleGenerationJob> getJob(@PathVariable String id) {
+        RuleGenerationJob job = jobService.getJob(id);
+        return job != null ? ResponseEntity.ok(job) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Server-sent events named after the job's state (reading_pdf, writing_rules,
+     * reloading, succeeded, ...), each carrying the job as JSON; page progress arrives as
+     * repeated reading_pdf events. The stream ends when the job does.
+     */
+    @GetMapping(path = "/jobs/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> jobEvents(@PathVariable String id) {
+        RuleGenerationJob job = jobService.getJob(id);
+        return job != null ? ResponseEntity.ok(jobService.subscribe(job)) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<?> cancelJob(@PathVariable String id) {
+        RuleGenerationJob job = jobService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobService.cancel(job)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job has finished reading the PDF and can no longer be cancelled.");
+        }
+        return ResponseEntity.accepted().body(job);
+    }
+
+    /**
+     * Activations and fires per loaded rule, hottest first; rules that never
+     * fired come last and are counted in neverFired.
+     */
+    @GetMapping("/profile")
+    public ResponseEntity<?> getProfile() {
+        RuleProfile.Snapshot snapshot = profileService.getSnapshot();
+        if (snapshot == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(PROFILING_OFF);
+        }
+        return ResponseEntity.ok(snapshot);
+    }
+
+    @DeleteMapping("/profile")
+    public ResponseEntity<?> resetProfile() {
+        if (!profileService.reset()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(PROFILING_OFF);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -2,10 +2,16 @@ package com.triage.controller;
 
 import com.triage.model.Patient;
 import com.triage.model.TriageResult;
+import com.triage.rules.SymptomCatalogue;
+import com.triage.service.TriageJournalService;
+import com.triage.service.TriageOverloadedException;
 import com.triage.service.TriageService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.util.List;
 import java.util.Set;
 
 @RestController
@@ -13,26 +19,66 @@ import java.util.Set;
 public class TriageController {
 
     private final TriageService triageService;
+    private final TriageJournalService journal;
 
-    public TriageController(TriageService triageService) {
+    public TriageController(TriageService triageService, TriageJournalService journal) {
         this.triageService = triageService;
+        this.journal = journal;
     }
 
     @GetMapping("/symptoms")
-    public ResponseEntity<Set<String>> getSymptoms() {
-        return ResponseEntity.ok(triageService.getAvailableSymptoms());
+    public ResponseEntity<Set<String>> getSymptoms(WebRequest request) {
+        SymptomCatalogue catalogue = triageService.getSymptomCatalogue();
+        String eTag = "\"" + catalogue.getVersion() + "\"";
+        if (request.checkNotModified(eTag)) {
+            // 304 Not Modified, headers already written
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(catalogue.getSymptoms());
     }
 
+    /**
+     * With {@code explain=true} the result also lists the rules that fired
+     * (Drools evaluator only).
+     */
     @PostMapping("/triage")
-    public ResponseEntity<?> triagePatient(@RequestBody Patient patient) {
+    public ResponseEntity<?> triagePatient(@RequestBody Patient patient,
+            @RequestParam(defaultValue = "false") boolean explain) {
         if (!triageService.isInitialized()) {
             return ResponseEntity.status(503).body("Triage engine not initialized. Please generate rules.");
         }
         try {
-            TriageResult result = triageService.triage(patient);
+            TriageResult result = triageService.triage(patient, explain);
+            journal.record(TriageJournalService.SOURCE_API, patient, result);
             return ResponseEntity.ok(result);
+        } catch (TriageOverloadedException e) {
+            return overloaded(e);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error processing triage: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/triage/batch")
+    public ResponseEntity<?> triagePatients(@RequestBody List<Patient> patients) {
+        if (!triageService.isInitialized()) {
+            return ResponseEntity.status(503).body("Triage engine not initialized. Please generate rules.");
+        }
+        try {
+            List<TriageResult> results = triageService.triageBatch(patients);
+            for (int i = 0; i < results.size(); i++) {
+                journal.record(TriageJournalService.SOURCE_API_BATCH, patients.get(i), results.get(i));
+            }
+            return ResponseEntity.ok(results);
+        } catch (TriageOverloadedException e) {
+            return overloaded(e);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error processing triage: " + e.getMessage());
         }
     }
+
+    private ResponseEntity<?> overloaded(TriageOverloadedException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
 }
@@ -0,0 +1,138 @@
+package com.triage.controller;
+
+import com.triage.model.Patient;
+import com.triage.model.TriageResult;
+import com.triage.service.TriageJournalService;
+import com.triage.service.TriageOverloadedException;
+import com.triage.service.TriageService;
+import com.triage.service.WaitingPatient;
+import com.triage.service.WaitingRoomService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/waiting-room")
+public class WaitingRoomController {
+
+    private final TriageService triageService;
+    private final WaitingRoomService waitingRoom;
+    private final TriageJournalService journal;
+
+    public WaitingRoomController(TriageService triageService, WaitingRoomService waitingRoom,
+            TriageJournalService journal) {
+        this.triageService = triageService;
+        this.waitingRoom = waitingRoom;
+        this.journal = journal;
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Integer>> getDepartments() {
+        return ResponseEntity.ok(waitingRoom.getDepartments());
+    }
+
+    /**
+     * The department's queue, most urgent first and then by arrival.
+     */
+    @GetMapping("/{department}")
+    public ResponseEntity<List<WaitingPatient>> getQueue(@PathVariable String department) {
+        return ResponseEntity.ok(waitingRoom.getPatients(department));
+    }
+
+    @GetMapping("/{department}/patients/{id}")
+    public ResponseEntity<WaitingPatient> getPatient(@PathVariable String department, @PathVariable String id) {
+        WaitingPatient patient = waitingRoom.getPatient(department, id);
+        return patient != null ? ResponseEntity.ok(patient) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Triage the patient and queue them. Posting a patient who is already
+     * waiting re-triages them, keeping their arrival.
+     */
+    @PostMapping("/{department}/patients")
+    public ResponseEntity<?> admit(@PathVariable String department, @RequestBody Patient patient) {
+        if (patient.getId() == null || patient.getId().isBlank()) {
+            return ResponseEntity.badRequest().body("Patient id is required to queue a patient.");
+        }
+        ResponseEntity<?> failed = checkInitialized();
+        if (failed != null) {
+            return failed;
+        }
+        try {
+            TriageResult result = triageService.triage(patient);
+            journal.record(TriageJournalService.SOURCE_WAITING_ROOM, patient, result);
+            WaitingPatient admitted = waitingRoom.admit(department, patient.getId(), result);
+            return ResponseEntity.created(URI.create("/api/waiting-room/" + department + "/patients/" + patient.getId()))
+                    .body(admitted);
+        } catch (TriageOverloadedException e) {
+            return overloaded(e);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error processing triage: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Re-triage a waiting patient with their current symptoms and move them to
+     * their new place in the queue.
+     */
+    @PutMapping("/{department}/patients/{id}")
+    public ResponseEntity<?> retriage(@PathVariable String department, @PathVariable String id,
+            @RequestBody Patient patient) {
+        if (waitingRoom.getPatient(department, id) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        ResponseEntity<?> failed = checkInitialized();
+        if (failed != null) {
+            return failed;
+        }
+        patient.setId(id);
+        try {
+            TriageResult result = triageService.triage(patient);
+            journal.record(TriageJournalService.SOURCE_WAITING_ROOM, patient, result);
+            WaitingPatient updated = waitingRoom.reprioritise(department, id, result);
+            // Discharged while being re-triaged
+            return updated != null ? ResponseEntity.ok(updated) : ResponseEntity.notFound().build();
+        } catch (TriageOverloadedException e) {
+            return overloaded(e);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Error processing triage: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{department}/patients/{id}")
+    public ResponseEntity<WaitingPatient> discharge(@PathVariable String department, @PathVariable String id) {
+        WaitingPatient discharged = waitingRoom.discharge(department, id);
+        return discharged != null ? ResponseEntity.ok(discharged) : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Server-sent events for a board: a "snapshot" event with the queue, then
+     * admitted, reprioritised and discharged events carrying the patient, the
+     * number waiting and a sequence number that goes up by one per change.
+     * 404 until the department's first patient is admitted.
+     */
+    @GetMapping(path = "/{department}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> events(@PathVariable String department) {
+        SseEmitter emitter = waitingRoom.subscribe(department);
+        return emitter != null ? ResponseEntity.ok(emitter) : ResponseEntity.notFound().build();
+    }
+
+    private ResponseEntity<?> checkInitialized() {
+        if (!triageService.isInitialized()) {
+            return ResponseEntity.status(503).body("Triage engine not initialized. Please generate rules.");
+        }
+        return null;
+    }
+
+    private ResponseEntity<?> overloaded(TriageOverloadedException e) {
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(e.getMessage());
+    }
+}
@@ -0,0 +1,52 @@
+package com.triage.model;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * One rule that fired while triaging a patient: the generated rule (its name
+ * carries the flowchart), the symptom it matched and the colour it gave.
+ */
+@JsonPropertyOrder({ "rule", "symptom", "color" })
+public class FiredRule {
+    private String rule;
+    private String symptom;
+    private String color;
+
+    public FiredRule() {
+    }
+
+    public FiredRule(String rule, String symptom, String color) {
+        this.rule = rule;
+        this.symptom = symptom;
+        this.color = color;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+
+    public void setRule(String rule) {
+        this.rule = rule;
+    }
+
+    public String getSymptom() {
+        return symptom;
+    }
+
+    public void setSymptom(String symptom) {
+        this.symptom = symptom;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    @Override
+    public String toString() {
+        return rule + " [" + symptom + "] -> " + color;
+    }
+}
@@ -7,6 +7,7 @@ public class Patient {
     private String id;
     private int age;
     private List<Symptom> symptoms;
+    private String presentingFlowchart; // optional, e.g. "Abdominal Pain"
 
     public Patient() {
         this.symptoms = new ArrayList<>();
@@ -38,6 +39,14 @@ public class Patient {
         this.age = age;
     }
 
+    public String getPresentingFlowchart() {
+        return presentingFlowchart;
+    }
+
+    public void setPresentingFlowchart(String presentingFlowchart) {
+        this.presentingFlowchart = presentingFlowchart;
+    }
+
     public String getId() {
         return id;
     }
@@ -1,9 +1,11 @@
 package com.triage.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 public class Symptom {
     private String name;
     private String stringValue;
-    private Double numericValue;
+    private double numericValue = Double.NaN; // NaN = not recorded
 
     public Symptom() {
     }
@@ -17,11 +19,18 @@ public class Symptom {
         this.stringValue = stringValue;
     }
 
-    public Symptom(String name, Double numericValue) {
+    public Symptom(String name, double numericValue) {
         this.name = name;
         this.numericValue = numericValue;
     }
 
+    /**
+     * A null value means none was recorded, as with {@link #setNumericValue(Double)}.
+     */
+    public Symptom(String name, Double numericValue) {
+        this(name, numericValue != null ? numericValue : Double.NaN);
+    }
+
     public String getName() {
         return name;
     }
@@ -38,17 +47,29 @@ public class Symptom {
         this.stringValue = stringValue;
     }
 
+    /**
+     * Boxed view for JSON and rules; null when no value was recorded.
+     */
     public Double getNumericValue() {
-        return numericValue;
+        return hasNumericValue() ? numericValue : null;
     }
 
     public void setNumericValue(Double numericValue) {
-        this.numericValue = numericValue;
+        this.numericValue = numericValue != null ? numericValue : Double.NaN;
+    }
+
+    @JsonIgnore
+    public double getNumeric() {
+        return numericValue;
+    }
+
+    public boolean hasNumericValue() {
+        return !Double.isNaN(numericValue);
     }
 
     @Override
     public String toString() {
-        if (numericValue != null)
+        if (hasNumericValue())
             return name + ": " + numericValue;
         if (stringValue != null)
             return name + ": " + stringValue;
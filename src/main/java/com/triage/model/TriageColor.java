@@ -0,0 +1,71 @@
+package com.triage.model;
+
+import java.util.Locale;
+
+/**
+ * Irish Children's Triage System (ICTS) categories, most urgent first.
+ */
+public enum TriageColor {
+    RED("Red", 1),
+    ORANGE("Orange", 2),
+    YELLOW("Yellow", 3),
+    GREEN("Green", 4),
+    BLUE("Blue", 5);
+
+    private final String label;
+    private final int priority;
+
+    TriageColor(String label, int priority) {
+        this.label = label;
+        this.priority = priority;
+    }
+
+    /**
+     * Parse a colour name in any case. Unknown names are treated as Blue, the
+     * lowest priority, as before.
+     */
+    public static TriageColor of(String color) {
+        switch (color.toLowerCase(Locale.ROOT)) {
+            case "red":
+                return RED;
+            case "orange":
+                return ORANGE;
+            case "yellow":
+                return YELLOW;
+            case "green":
+                return GREEN;
+            default:
+                return BLUE;
+        }
+    }
+
+    /**
+     * The colour for an ICTS category number (1 = Red ... 5 = Blue).
+     */
+    public static TriageColor ofCategory(int category) {
+        switch (category) {
+            case 1:
+                return RED;
+            case 2:
+                return ORANGE;
+            case 3:
+                return YELLOW;
+            case 4:
+                return GREEN;
+            default:
+                return BLUE;
+        }
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public boolean isMoreUrgentThan(TriageColor other) {
+        return priority < other.priority;
+    }
+}
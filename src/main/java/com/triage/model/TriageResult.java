@@ -1,49 +1,88 @@
 package com.triage.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+
+@JsonPropertyOrder({ "color", "priority", "rulesFired", "firedRules" })
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class TriageResult {
-    private String color; // Red, Orange, Yellow, Green, Blue
-    private int priority; // 1=Red, 5=Blue
+    private TriageColor triageColor = TriageColor.BLUE;
+    // Only set when the evaluation was traced
+    private Integer rulesFired;
+    private List<FiredRule> firedRules;
+    private String rulesHash;
 
     public TriageResult() {
     }
 
+    // Used by the generated rules: insert(new TriageResult("Red"))
     public TriageResult(String color) {
         setColor(color);
     }
 
+    public TriageResult(TriageColor triageColor) {
+        this.triageColor = triageColor;
+    }
+
     public void setColor(String color) {
-        this.color = color;
-        switch (color.toLowerCase()) {
-            case "red":
-                priority = 1;
-                break;
-            case "orange":
-                priority = 2;
-                break;
-            case "yellow":
-                priority = 3;
-                break;
-            case "green":
-                priority = 4;
-                break;
-            case "blue":
-                priority = 5;
-                break;
-            default:
-                priority = 5;
-        }
+        this.triageColor = TriageColor.of(color);
+    }
+
+    @JsonIgnore
+    public TriageColor getTriageColor() {
+        return triageColor;
     }
 
     public String getColor() {
-        return color;
+        return triageColor.getLabel();
     }
 
     public int getPriority() {
-        return priority;
+        return triageColor.getPriority();
+    }
+
+    /**
+     * Rules fired for this patient, or null if the evaluation was not traced.
+     * Can exceed the size of {@link #getFiredRules()} when the trace was full.
+     */
+    public Integer getRulesFired() {
+        return rulesFired;
+    }
+
+    public void setRulesFired(Integer rulesFired) {
+        this.rulesFired = rulesFired;
+    }
+
+    /**
+     * The rules that fired, in firing order, or null if the evaluation was not traced.
+     */
+    public List<FiredRule> getFiredRules() {
+        return firedRules;
+    }
+
+    public void setFiredRules(List<FiredRule> firedRules) {
+        this.firedRules = firedRules;
+    }
+
+    /**
+     * SHA-256 of the DRL that produced this result, as loaded by TriageService;
+     * null if it did not come from there. Not sent to clients.
+     */
+    @JsonIgnore
+    public String getRulesHash() {
+        return rulesHash;
+    }
+
+    @JsonIgnore
+    public void setRulesHash(String rulesHash) {
+        this.rulesHash = rulesHash;
     }
 
     @Override
     public String toString() {
-        return "Triage Result: " + color + " (Priority " + priority + ")";
+        return "Triage Result: " + getColor() + " (Priority " + getPriority() + ")";
     }
 }
@@ -0,0 +1,125 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.TriageColor;
+import com.triage.model.TriageResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates the generated rules without Drools. Each colour gets a bit mask
+ * over the {@link SymptomCatalogue} IDs of the symptoms whose most urgent rule
+ * gives that colour; a patient's {@link SymptomSet} is intersected with the
+ * masks from Red down and the first hit wins, Blue otherwise.
+ * <p>
+ * Built from the same parse as {@link SymptomIndex}, so it only accepts rule
+ * sets the index can express and then answers exactly as the rules would.
+ */
+public class BitSetTriageEvaluator implements TriageEvaluator {
+
+    // Blue is the default, so it never needs a mask
+    private static final TriageColor[] URGENCY_ORDER = {
+            TriageColor.RED, TriageColor.ORANGE, TriageColor.YELLOW, TriageColor.GREEN };
+
+    private String drlPath = "generated_rules/triage.drl";
+    private SymptomCatalogue catalogue = SymptomCatalogue.EMPTY;
+    // Indexed by TriageColor.ordinal()
+    private BitSet[] masks;
+    // Per flowchart (TriageRuleGenerator.flowchartKey); null unless the rules are flowchart-scoped
+    private Map<String, BitSet[]> masksByFlowchart;
+    private int ruleCount;
+    private long loadTimeMillis;
+
+    public void setDrlPath(String drlPath) {
+        this.drlPath = drlPath;
+    }
+
+    /**
+     * Throws {@link IllegalStateException} when the DRL holds rules that cannot
+     * be turned into masks; callers are expected to fall back to Drools.
+     */
+    @Override
+    public void init() {
+        long start = System.nanoTime();
+        File drlFile = new File(drlPath);
+        if (!drlFile.exists()) {
+            throw new RuntimeException("Rules file not found: " + drlFile.getAbsolutePath());
+        }
+
+        SymptomIndex index;
+        try {
+            index = SymptomIndex.compile(drlFile);
+            catalogue = SymptomCatalogue.load(drlFile);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read rules: " + e.getMessage(), e);
+        }
+        if (!index.isComplete()) {
+            throw new IllegalStateException(index.getUnindexedRuleCount() + " rule(s) cannot be compiled to masks");
+        }
+
+        masks = compileMasks(index.colorsBySymptom());
+        Map<String, Map<String, TriageColor>> byFlowchart = index.colorsByFlowchart();
+        if (byFlowchart != null) {
+            masksByFlowchart = new HashMap<>();
+            byFlowchart.forEach((flowchart, colors) -> masksByFlowchart.put(flowchart, compileMasks(colors)));
+        } else {
+            masksByFlowchart = null;
+        }
+        ruleCount = index.getRuleCount();
+        loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public TriageResult executeTriage(Patient patient) {
+        SymptomSet symptoms = catalogue.encode(patient);
+        BitSet[] patientMasks = masksFor(patient);
+        for (TriageColor color : URGENCY_ORDER) {
+            if (symptoms.intersects(patientMasks[color.ordinal()])) {
+                return new TriageResult(color);
+            }
+        }
+        return new TriageResult(TriageColor.BLUE); // Default
+    }
+
+    @Override
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    @Override
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    // Same scoping as the engine: the presenting flowchart's rules if known, otherwise all
+    private BitSet[] masksFor(Patient patient) {
+        String presenting = patient.getPresentingFlowchart();
+        if (masksByFlowchart != null && presenting != null) {
+            BitSet[] flowchartMasks = masksByFlowchart.get(TriageRuleGenerator.flowchartKey(presenting));
+            if (flowchartMasks != null) {
+                return flowchartMasks;
+            }
+        }
+        return masks;
+    }
+
+    private BitSet[] compileMasks(Map<String, TriageColor> colorBySymptom) {
+        BitSet[] compiled = new BitSet[TriageColor.values().length];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = new BitSet(catalogue.size());
+        }
+        colorBySymptom.forEach((symptom, color) -> {
+            int id = catalogue.idOf(symptom);
+            if (id < 0) {
+                throw new IllegalStateException("Symptom missing from catalogue: " + symptom);
+            }
+            compiled[color.ordinal()].set(id);
+        });
+        return compiled;
+    }
+}
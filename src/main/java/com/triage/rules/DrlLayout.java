@@ -0,0 +1,18 @@
+package com.triage.rules;
+
+/**
+ * How {@link TriageRuleGenerator} lays out the rules it writes.
+ */
+public enum DrlLayout {
+    /**
+     * One rule per flowchart symptom, matching {@code Symptom(...) from} the
+     * patient's symptom list.
+     */
+    PER_SYMPTOM,
+    /**
+     * One rule per flowchart and category, matching any of its symptoms as facts
+     * in working memory so the name constraints are hash-indexed. Needs an
+     * engine that inserts each {@code Symptom} alongside the {@code Patient}.
+     */
+    GROUPED
+}
@@ -0,0 +1,37 @@
+package com.triage.rules;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Meters recorded by {@link TriageEngine} on the Drools path. Built once per
+ * registry so the hot path only touches already-registered meters.
+ */
+final class EngineMetrics {
+
+    final Timer sessionCreate;
+    final Timer fireAllRules;
+    final Timer resultSelect;
+    final DistributionSummary rulesFired;
+
+    EngineMetrics(MeterRegistry registry) {
+        sessionCreate = Timer.builder("triage.engine.session.create")
+                .description("Time to obtain a Drools session (new, pooled or shared)")
+                .publishPercentileHistogram()
+                .register(registry);
+        fireAllRules = Timer.builder("triage.engine.fire")
+                .description("Time spent inserting the patient and firing the rules")
+                .publishPercentileHistogram()
+                .register(registry);
+        resultSelect = Timer.builder("triage.engine.result.select")
+                .description("Time to collect the inserted results and pick the highest priority")
+                .publishPercentileHistogram()
+                .register(registry);
+        rulesFired = DistributionSummary.builder("triage.engine.rules.fired")
+                .description("Rules fired per patient")
+                .baseUnit("rules")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,14 @@
+package com.triage.rules;
+
+/**
+ * How {@link TriageEngine} evaluates a patient.
+ */
+public enum EngineMode {
+    /** Build a Drools session and fire the generated rules for every patient. */
+    DROOLS,
+    /**
+     * Resolve each symptom through a precompiled symptom-name index and only fall
+     * back to Drools when the rule set contains rules the index cannot express.
+     */
+    INDEXED
+}
@@ -0,0 +1,14 @@
+package com.triage.rules;
+
+/**
+ * Which {@link TriageEvaluator} answers triage requests.
+ */
+public enum EvaluatorType {
+    /** {@link TriageEngine}: the generated rules in Drools, configured by {@link EngineMode}. */
+    DROOLS,
+    /**
+     * {@link BitSetTriageEvaluator}: one symptom bit mask per colour, checked from
+     * Red down. Falls back to Drools when the rules cannot be expressed as masks.
+     */
+    BITSET
+}
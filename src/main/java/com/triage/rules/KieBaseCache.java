@@ -0,0 +1,150 @@
+package com.triage.rules;
+
+import org.drools.core.common.DroolsObjectInputStream;
+import org.drools.core.common.DroolsObjectOutputStream;
+import org.drools.core.util.Drools;
+import org.kie.api.KieBase;
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.internal.io.ResourceFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Compiles the generated DRL into a {@link KieBase} and keeps a serialized copy
+ * next to it ({@code triage.drl} -> {@code triage.kbase}).
+ * <p>
+ * The cache records the SHA-256 of the DRL it was built from and the Drools
+ * version that built it; if either no longer matches, the DRL is compiled again
+ * and the cache rewritten.
+ */
+public final class KieBaseCache {
+
+    private static final String MAGIC = "TRIAGE-KBASE";
+    private static final int FORMAT_VERSION = 1;
+
+    private KieBaseCache() {
+    }
+
+    public static File cacheFileFor(File drlFile) {
+        String name = drlFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(drlFile.getAbsoluteFile().getParentFile(), base + ".kbase");
+    }
+
+    /**
+     * Load the precompiled KieBase for {@code drlFile}, compiling the DRL (and
+     * refreshing the cache) only when the cache is missing, stale or unreadable.
+     */
+    public static KieBase loadOrCompile(File drlFile) {
+        if (!drlFile.exists()) {
+            throw new RuntimeException("Rules file not found: " + drlFile.getAbsolutePath());
+        }
+        File cacheFile = cacheFileFor(drlFile);
+        String drlHash = hash(drlFile);
+
+        KieBase cached = read(cacheFile, drlHash);
+        if (cached != null) {
+            return cached;
+        }
+
+        KieBase kBase = compile(drlFile);
+        try {
+            write(cacheFile, drlHash, kBase);
+        } catch (IOException e) {
+            System.out.println("Could not write precompiled rules to " + cacheFile + ": " + e.getMessage());
+        }
+        return kBase;
+    }
+
+    /**
+     * Compile {@code drlFile} and write its cache, e.g. right after generation so
+     * the next start does not pay for the compile.
+     */
+    public static void precompile(File drlFile) throws IOException {
+        write(cacheFileFor(drlFile), hash(drlFile), compile(drlFile));
+    }
+
+    public static KieBase compile(File drlFile) {
+        if (!drlFile.exists()) {
+            throw new RuntimeException("Rules file not found: " + drlFile.getAbsolutePath());
+        }
+
+        KieServices ks = KieServices.Factory.get();
+        KieFileSystem kfs = ks.newKieFileSystem();
+        kfs.write(ResourceFactory.newFileResource(drlFile));
+        KieBuilder kb = ks.newKieBuilder(kfs).buildAll();
+
+        if (kb.getResults().hasMessages(Message.Level.ERROR)) {
+            throw new RuntimeException("Build Errors:\n" + kb.getResults().toString());
+        }
+
+        return ks.newKieContainer(kb.getKieModule().getReleaseId()).getKieBase();
+    }
+
+    private static KieBase read(File cacheFile, String drlHash) {
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(cacheFile.toPath()));
+                ObjectInputStream in = new DroolsObjectInputStream(raw, KieBaseCache.class.getClassLoader())) {
+            if (!MAGIC.equals(in.readUTF()) || in.readInt() != FORMAT_VERSION
+                    || !Drools.getFullVersion().equals(in.readUTF()) || !drlHash.equals(in.readUTF())) {
+                return null; // Stale
+            }
+            return (KieBase) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            System.out.println("Ignoring unreadable precompiled rules " + cacheFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(File cacheFile, String drlHash, KieBase kBase) throws IOException {
+        Path target = cacheFile.toPath();
+        Path tmp = Files.createTempFile(target.toAbsolutePath().getParent(), cacheFile.getName(), ".tmp");
+        try {
+            try (OutputStream raw = new BufferedOutputStream(Files.newOutputStream(tmp));
+                    ObjectOutputStream out = new DroolsObjectOutputStream(raw)) {
+                out.writeUTF(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(Drools.getFullVersion());
+                out.writeUTF(drlHash);
+                out.writeObject(kBase);
+            }
+            // Readers either see the old cache or the complete new one
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Hex SHA-256 of the DRL, the identity the cache is checked against.
+     */
+    public static String hash(File drlFile) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(Files.readAllBytes(drlFile.toPath())));
+        } catch (IOException e) {
+            throw new RuntimeException("Rules file not readable: " + drlFile.getAbsolutePath(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
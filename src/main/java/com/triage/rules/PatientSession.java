@@ -0,0 +1,198 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageResult;
+import org.drools.core.common.InternalAgenda;
+import org.drools.core.impl.StatefulKnowledgeSessionImpl;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.DefaultRuleRuntimeEventListener;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.api.runtime.rule.Match;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A stateful session kept open for one patient between re-triages
+ * ({@link SessionStrategy#PER_PATIENT}). Each call passes the patient's full
+ * symptom list; only symptoms added or removed since the last call are inserted
+ * or deleted as Symptom facts, so Drools only re-matches the rules naming them.
+ * <p>
+ * Rules insert their results with a plain insert, so a result stays in working
+ * memory after the symptom that produced it is gone; the results each symptom
+ * produced are tracked here and deleted along with it.
+ */
+final class PatientSession {
+
+    private static final class Entry {
+        final Symptom symptom;
+        final FactHandle handle;
+        final List<FactHandle> results = new ArrayList<>(2);
+
+        Entry(Symptom symptom, FactHandle handle) {
+            this.symptom = symptom;
+            this.handle = handle;
+        }
+    }
+
+    private final KieSession session;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<Symptom, Entry> entriesBySymptom = new IdentityHashMap<>();
+    private Match firing;
+    private String flowchart;
+    private List<String> focused = List.of();
+    private boolean disposed;
+
+    PatientSession(KieSession session) {
+        this.session = session;
+        session.addEventListener(new DefaultAgendaEventListener() {
+            @Override
+            public void beforeMatchFired(BeforeMatchFiredEvent event) {
+                firing = event.getMatch();
+            }
+
+            @Override
+            public void afterMatchFired(AfterMatchFiredEvent event) {
+                firing = null;
+            }
+        });
+        session.addEventListener(new DefaultRuleRuntimeEventListener() {
+            @Override
+            public void objectInserted(ObjectInsertedEvent event) {
+                if (firing != null && event.getObject() instanceof TriageResult) {
+                    for (Object matched : firing.getObjects()) {
+                        Entry entry = matched instanceof Symptom ? entriesBySymptom.get(matched) : null;
+                        if (entry != null) {
+                            entry.results.add(event.getFactHandle());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Bring the session up to date with {@code patient} and fire whatever the
+     * change activated. Returns null once the session has been disposed, so the
+     * caller can fall back to a fresh session.
+     *
+     * @param focus agenda groups to focus, as for a fresh session
+     * @param firstMatchOnly fire one rule per call (prioritized rules); the best
+     *        match is then either already fired or still on the agenda
+     */
+    synchronized TriageResult retriage(Patient patient, List<String> focus, boolean firstMatchOnly,
+            EngineMetrics metrics) {
+        if (disposed) {
+            return null;
+        }
+        long start = System.nanoTime();
+        if (!Objects.equals(patient.getPresentingFlowchart(), flowchart)) {
+            // Results already fired came from the old flowchart's groups
+            clear();
+            flowchart = patient.getPresentingFlowchart();
+        }
+
+        Map<String, Symptom> wanted = new HashMap<>();
+        if (patient.getSymptoms() != null) {
+            for (Symptom symptom : patient.getSymptoms()) {
+                if (symptom != null) {
+                    wanted.putIfAbsent(keyOf(symptom), symptom);
+                }
+            }
+        }
+
+        boolean changed = false;
+        Iterator<Map.Entry<String, Entry>> current = entries.entrySet().iterator();
+        while (current.hasNext()) {
+            Map.Entry<String, Entry> entry = current.next();
+            if (wanted.remove(entry.getKey()) == null) {
+                delete(entry.getValue());
+                current.remove();
+                changed = true;
+            }
+        }
+        for (Map.Entry<String, Symptom> added : wanted.entrySet()) {
+            entries.put(added.getKey(), insert(added.getValue()));
+            changed = true;
+        }
+
+        int fired = 0;
+        if (changed) {
+            unfocus();
+            for (String group : focus) {
+                session.getAgenda().getAgendaGroup(group).setFocus();
+            }
+            focused = focus;
+            fired = firstMatchOnly ? session.fireAllRules(1) : session.fireAllRules();
+        }
+        long fireEnd = System.nanoTime();
+        metrics.fireAllRules.record(fireEnd - start, TimeUnit.NANOSECONDS);
+        metrics.rulesFired.record(fired);
+
+        TriageResult result = TriageEngine.selectResult(session.getObjects(TriageEngine.RESULT_FILTER));
+        metrics.resultSelect.record(System.nanoTime() - fireEnd, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    synchronized void dispose() {
+        if (!disposed) {
+            disposed = true;
+            session.dispose();
+        }
+    }
+
+    // A first-match fire leaves the groups it did not reach on the focus stack, and
+    // setFocus pushes them again; take them off (their matches stay) so the
+    // stack does not grow with every re-triage
+    private void unfocus() {
+        if (session instanceof StatefulKnowledgeSessionImpl) {
+            InternalAgenda agenda = ((StatefulKnowledgeSessionImpl) session).getAgenda();
+            for (String group : focused) {
+                agenda.removeAgendaGroup(group);
+            }
+        }
+    }
+
+    private Entry insert(Symptom added) {
+        // A copy, so a caller reusing its Symptom objects cannot change facts under Drools
+        Symptom symptom = new Symptom(added.getName());
+        symptom.setStringValue(added.getStringValue());
+        symptom.setNumericValue(added.getNumericValue());
+        Entry entry = new Entry(symptom, session.insert(symptom));
+        entriesBySymptom.put(symptom, entry);
+        return entry;
+    }
+
+    private void delete(Entry entry) {
+        // Cancels the symptom's pending matches; results of fired ones go explicitly
+        session.delete(entry.handle);
+        for (FactHandle result : entry.results) {
+            session.delete(result);
+        }
+        entriesBySymptom.remove(entry.symptom);
+    }
+
+    // Every fact in the session belongs to an entry, results included
+    private void clear() {
+        for (Entry entry : entries.values()) {
+            delete(entry);
+        }
+        entries.clear();
+    }
+
+    // Same name and value means the same finding; duplicates in one list collapse
+    private static String keyOf(Symptom symptom) {
+        return symptom.getName() + '\u0000' + symptom.getStringValue() + '\u0000' + symptom.getNumericValue();
+    }
+}
@@ -0,0 +1,208 @@
+package com.triage.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What {@link TriageRuleGenerator} last produced from the PDF, written next to
+ * the DRL ({@code triage.drl} -> {@code triage.manifest.json}).
+ * <p>
+ * Holds a content hash per page and the rules of every flowchart segment with
+ * the position of its title, so a regeneration only has to re-read the pages
+ * around segments whose pages changed.
+ */
+public class RuleManifest {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private int formatVersion = FORMAT_VERSION;
+    private DrlLayout layout = DrlLayout.PER_SYMPTOM;
+    private boolean prioritized;
+    private boolean flowchartScoped;
+    private String profileHash;
+    private String drlHash;
+    private List<String> pageHashes = new ArrayList<>();
+    private List<Segment> segments = new ArrayList<>();
+
+    /**
+     * The rules between one flowchart title and the next. Titles can repeat on
+     * continuation pages, so segments are identified by position, not name.
+     */
+    public static class Segment {
+        private String title;
+        private int startPage;
+        private int startLine;
+        private List<Rule> rules = new ArrayList<>();
+
+        public Segment() {
+        }
+
+        public Segment(String title, int startPage, int startLine) {
+            this.title = title;
+            this.startPage = startPage;
+            this.startLine = startLine;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public void setTitle(String title) {
+            this.title = title;
+        }
+
+        /** 1-based page holding the title line. */
+        public int getStartPage() {
+            return startPage;
+        }
+
+        public void setStartPage(int startPage) {
+            this.startPage = startPage;
+        }
+
+        /** Index of the title line among the lines extracted from its page. */
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public void setStartLine(int startLine) {
+            this.startLine = startLine;
+        }
+
+        public List<Rule> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<Rule> rules) {
+            this.rules = rules;
+        }
+    }
+
+    public static class Rule {
+        private String symptom;
+        private int category;
+
+        public Rule() {
+        }
+
+        public Rule(String symptom, int category) {
+            this.symptom = symptom;
+            this.category = category;
+        }
+
+        public String getSymptom() {
+            return symptom;
+        }
+
+        public void setSymptom(String symptom) {
+            this.symptom = symptom;
+        }
+
+        public int getCategory() {
+            return category;
+        }
+
+        public void setCategory(int category) {
+            this.category = category;
+        }
+    }
+
+    public static File manifestFileFor(File drlFile) {
+        String name = drlFile.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new File(drlFile.getAbsoluteFile().getParentFile(), base + ".manifest.json");
+    }
+
+    /**
+     * Read a manifest, or null if it is missing, unreadable or from another format.
+     */
+    public static RuleManifest read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            RuleManifest manifest = MAPPER.readValue(file, RuleManifest.class);
+            return manifest.getFormatVersion() == FORMAT_VERSION ? manifest : null;
+        } catch (IOException e) {
+            System.out.println("Ignoring unreadable rule manifest " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(File file) throws IOException {
+        MAPPER.writeValue(file, this);
+    }
+
+    public int getFormatVersion() {
+        return formatVersion;
+    }
+
+    public void setFormatVersion(int formatVersion) {
+        this.formatVersion = formatVersion;
+    }
+
+    public DrlLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(DrlLayout layout) {
+        this.layout = layout;
+    }
+
+    public boolean isPrioritized() {
+        return prioritized;
+    }
+
+    public void setPrioritized(boolean prioritized) {
+        this.prioritized = prioritized;
+    }
+
+    public boolean isFlowchartScoped() {
+        return flowchartScoped;
+    }
+
+    public void setFlowchartScoped(boolean flowchartScoped) {
+        this.flowchartScoped = flowchartScoped;
+    }
+
+    /** Hash of the rule profile the rules were ordered by; null for PDF order. */
+    public String getProfileHash() {
+        return profileHash;
+    }
+
+    public void setProfileHash(String profileHash) {
+        this.profileHash = profileHash;
+    }
+
+    /** SHA-256 of the DRL written alongside this manifest. */
+    public String getDrlHash() {
+        return drlHash;
+    }
+
+    public void setDrlHash(String drlHash) {
+        this.drlHash = drlHash;
+    }
+
+    public List<String> getPageHashes() {
+        return pageHashes;
+    }
+
+    public void setPageHashes(List<String> pageHashes) {
+        this.pageHashes = pageHashes;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public void setSegments(List<Segment> segments) {
+        this.segments = segments;
+    }
+}
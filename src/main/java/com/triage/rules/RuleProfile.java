@@ -0,0 +1,272 @@
+package com.triage.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.MatchCreatedEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Activation and fire counts per rule name, fed by every session of a
+ * {@link TriageEngine} it is set on ({@link TriageEngine#setRuleProfile}).
+ * <p>
+ * One instance outlives reloads: each engine registers its rule names on init,
+ * so rules that never fire show up with zero counts and counts of rules that
+ * are no longer loaded are dropped. Counters are {@link LongAdder}s, so
+ * sessions on many threads bump the same hot rule without contending.
+ * <p>
+ * Only what Drools evaluates is counted; results answered from the result
+ * cache, the symptom index or the bitset evaluator fire no rules.
+ */
+public class RuleProfile extends DefaultAgendaEventListener {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final class Counters {
+        final LongAdder activations = new LongAdder();
+        final LongAdder fires = new LongAdder();
+    }
+
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+    private volatile Instant since = Instant.now();
+    private volatile boolean tracking;
+
+    /**
+     * Counts of one rule. Activations are the matches Drools created; with
+     * prioritized rules it stops after the first fire, so rules in lower
+     * categories may not have been evaluated at all.
+     */
+    public static class RuleCount {
+        private String rule;
+        private long activations;
+        private long fires;
+
+        public RuleCount() {
+        }
+
+        public RuleCount(String rule, long activations, long fires) {
+            this.rule = rule;
+            this.activations = activations;
+            this.fires = fires;
+        }
+
+        public String getRule() {
+            return rule;
+        }
+
+        public void setRule(String rule) {
+            this.rule = rule;
+        }
+
+        public long getActivations() {
+            return activations;
+        }
+
+        public void setActivations(long activations) {
+            this.activations = activations;
+        }
+
+        public long getFires() {
+            return fires;
+        }
+
+        public void setFires(long fires) {
+            this.fires = fires;
+        }
+    }
+
+    /**
+     * The counts at one point in time, hottest rule first, as served by
+     * {@code GET /api/rules/profile} and written to the snapshot file. Counts
+     * taken while sessions are firing may be a few fires apart from each other.
+     */
+    public static class Snapshot {
+        private String since;
+        private String takenAt;
+        private long fires;
+        private int neverFired;
+        private List<RuleCount> rules = new ArrayList<>();
+
+        /**
+         * Read a snapshot, or null if it is missing or unreadable.
+         */
+        public static Snapshot read(File file) {
+            if (!file.exists()) {
+                return null;
+            }
+            try {
+                return MAPPER.readValue(file, Snapshot.class);
+            } catch (IOException e) {
+                System.out.println("Ignoring unreadable rule profile " + file + ": " + e.getMessage());
+                return null;
+            }
+        }
+
+        /**
+         * Write to a temp file next to {@code file} and move it into place, so a
+         * generator reading it never sees half a snapshot.
+         */
+        public void write(File file) throws IOException {
+            Path target = file.getAbsoluteFile().toPath();
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                MAPPER.writeValue(temp.toFile(), this);
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /** When counting started: the first start-up or the last reset. */
+        public String getSince() {
+            return since;
+        }
+
+        public void setSince(String since) {
+            this.since = since;
+        }
+
+        public String getTakenAt() {
+            return takenAt;
+        }
+
+        public void setTakenAt(String takenAt) {
+            this.takenAt = takenAt;
+        }
+
+        /** Fires of all rules together. */
+        public long getFires() {
+            return fires;
+        }
+
+        public void setFires(long fires) {
+            this.fires = fires;
+        }
+
+        /** Loaded rules that have not fired once since {@link #getSince()}. */
+        public int getNeverFired() {
+            return neverFired;
+        }
+
+        public void setNeverFired(int neverFired) {
+            this.neverFired = neverFired;
+        }
+
+        public List<RuleCount> getRules() {
+            return rules;
+        }
+
+        public void setRules(List<RuleCount> rules) {
+            this.rules = rules;
+        }
+    }
+
+    @Override
+    public void matchCreated(MatchCreatedEvent event) {
+        Counters c = counters.get(event.getMatch().getRule().getName());
+        if (c != null) {
+            c.activations.increment();
+        }
+    }
+
+    @Override
+    public void afterMatchFired(AfterMatchFiredEvent event) {
+        Counters c = counters.get(event.getMatch().getRule().getName());
+        if (c != null) {
+            c.fires.increment();
+        }
+    }
+
+    /**
+     * Start counting {@code ruleNames} and forget every other rule. Sessions of
+     * the engine being replaced may still fire; their rules are ignored if no
+     * longer loaded.
+     */
+    void track(Collection<String> ruleNames) {
+        tracking = true;
+        Set<String> names = new HashSet<>(ruleNames);
+        counters.keySet().retainAll(names);
+        for (String name : names) {
+            counters.putIfAbsent(name, new Counters());
+        }
+    }
+
+    /**
+     * Add the counts of an earlier snapshot, normally the one written before the
+     * last shutdown, so counting carries on across restarts instead of starting
+     * from zero. Once an engine tracks its rules, only loaded rules are added.
+     */
+    public void restore(Snapshot previous) {
+        for (RuleCount count : previous.getRules()) {
+            Counters c = tracking ? counters.get(count.getRule())
+                    : counters.computeIfAbsent(count.getRule(), name -> new Counters());
+            if (c != null) {
+                c.activations.add(count.getActivations());
+                c.fires.add(count.getFires());
+            }
+        }
+        if (previous.getSince() != null) {
+            try {
+                since = Instant.parse(previous.getSince());
+            } catch (DateTimeParseException e) {
+                // Keep our own start time
+            }
+        }
+    }
+
+    /**
+     * Zero every counter, e.g. to measure a new rule ordering on its own.
+     */
+    public void reset() {
+        for (Counters c : counters.values()) {
+            c.activations.reset();
+            c.fires.reset();
+        }
+        since = Instant.now();
+    }
+
+    public Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.setSince(since.toString());
+        snapshot.setTakenAt(Instant.now().toString());
+        long fires = 0;
+        int neverFired = 0;
+        for (Map.Entry<String, Counters> entry : counters.entrySet()) {
+            RuleCount count = new RuleCount(entry.getKey(), entry.getValue().activations.sum(),
+                    entry.getValue().fires.sum());
+            snapshot.getRules().add(count);
+            fires += count.getFires();
+            if (count.getFires() == 0) {
+                neverFired++;
+            }
+        }
+        snapshot.getRules().sort(Comparator.comparingLong(RuleCount::getFires).reversed()
+                .thenComparing(Comparator.comparingLong(RuleCount::getActivations).reversed())
+                .thenComparing(RuleCount::getRule));
+        snapshot.setFires(fires);
+        snapshot.setNeverFired(neverFired);
+        return snapshot;
+    }
+}
@@ -0,0 +1,88 @@
+package com.triage.rules;
+
+import com.triage.model.FiredRule;
+import com.triage.model.Symptom;
+import com.triage.model.TriageResult;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.BeforeMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
+import org.kie.api.event.rule.ObjectDeletedEvent;
+import org.kie.api.event.rule.ObjectInsertedEvent;
+import org.kie.api.event.rule.ObjectUpdatedEvent;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the rules fired in one traced session, with the symptom each matched
+ * and the colour it inserted. Entries go into arrays sized up front, holding
+ * references to strings the rules and facts already own; rules beyond the
+ * capacity are only counted.
+ */
+final class RuleTrace extends DefaultAgendaEventListener implements RuleRuntimeEventListener {
+
+    private final String[] rules;
+    private final String[] symptoms;
+    private final String[] colors;
+    private int recorded;
+    private int fired;
+    private boolean firing;
+
+    RuleTrace(int capacity) {
+        rules = new String[capacity];
+        symptoms = new String[capacity];
+        colors = new String[capacity];
+    }
+
+    @Override
+    public void beforeMatchFired(BeforeMatchFiredEvent event) {
+        firing = true;
+        if (fired++ < rules.length) {
+            rules[recorded] = event.getMatch().getRule().getName();
+            for (Object matched : event.getMatch().getObjects()) {
+                if (matched instanceof Symptom) {
+                    symptoms[recorded] = ((Symptom) matched).getName();
+                    break;
+                }
+            }
+            recorded++;
+        }
+    }
+
+    @Override
+    public void afterMatchFired(AfterMatchFiredEvent event) {
+        firing = false;
+    }
+
+    @Override
+    public void objectInserted(ObjectInsertedEvent event) {
+        // The consequence of the rule recorded last
+        if (firing && fired <= rules.length && event.getObject() instanceof TriageResult) {
+            colors[recorded - 1] = ((TriageResult) event.getObject()).getColor();
+        }
+    }
+
+    @Override
+    public void objectUpdated(ObjectUpdatedEvent event) {
+    }
+
+    @Override
+    public void objectDeleted(ObjectDeletedEvent event) {
+    }
+
+    /**
+     * Rules fired, including any beyond the recorded ones.
+     */
+    int getFired() {
+        return fired;
+    }
+
+    List<FiredRule> toList() {
+        List<FiredRule> list = new ArrayList<>(recorded);
+        for (int i = 0; i < recorded; i++) {
+            list.add(new FiredRule(rules[i], symptoms[i], colors[i]));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,27 @@
+package com.triage.rules;
+
+/**
+ * How {@link TriageEngine} obtains a Drools session for a patient.
+ */
+public enum SessionStrategy {
+    /** Create a new stateful session for every patient and dispose it afterwards. */
+    PER_REQUEST,
+    /**
+     * Share one thread-safe stateless session; results come back through the
+     * batch execution results instead of a scan of working memory.
+     */
+    STATELESS,
+    /**
+     * Borrow a stateful session from a bounded pool and clear its working memory
+     * before handing it back.
+     */
+    POOLED,
+    /**
+     * Keep a stateful session open per patient ID and apply only the symptoms
+     * added or removed since that patient's last triage; idle sessions are
+     * disposed after a timeout. Only used with {@link DrlLayout#GROUPED} rules;
+     * patients without an ID, and every patient under per-symptom rules, get a
+     * fresh session.
+     */
+    PER_PATIENT
+}
@@ -0,0 +1,125 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * The sorted, immutable set of symptom names referenced by a generated DRL file,
+ * together with a content hash clients can use as an ETag.
+ * <p>
+ * Each name also gets an integer ID, its position in sorted order, so patients
+ * can be encoded as a {@link SymptomSet}. IDs are only meaningful against the
+ * catalogue that issued them.
+ */
+public final class SymptomCatalogue {
+
+    public static final SymptomCatalogue EMPTY = new SymptomCatalogue(new TreeSet<>());
+
+    private static final String SYMPTOM_PREFIX = "Symptom( name == \"";
+
+    private final SortedSet<String> symptoms;
+    private final String version;
+    private final String[] names;
+    private final Map<String, Integer> ids;
+
+    private SymptomCatalogue(SortedSet<String> symptoms) {
+        this.symptoms = Collections.unmodifiableSortedSet(symptoms);
+        this.version = hash(symptoms);
+        this.names = symptoms.toArray(new String[0]);
+        this.ids = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            ids.put(names[i], i);
+        }
+    }
+
+    public static SymptomCatalogue load(File drlFile) throws IOException {
+        if (!drlFile.exists()) {
+            return EMPTY;
+        }
+
+        SortedSet<String> symptoms = new TreeSet<>();
+        List<String> lines = Files.readAllLines(drlFile.toPath(), StandardCharsets.UTF_8);
+        for (String raw : lines) {
+            String line = raw.trim();
+            // Match: Symptom( name == "..." )
+            if (line.startsWith(SYMPTOM_PREFIX)) {
+                int start = SYMPTOM_PREFIX.length();
+                int end = line.lastIndexOf("\"");
+                if (end > start) {
+                    symptoms.add(line.substring(start, end).replace("\\\"", "\""));
+                }
+            }
+        }
+        return new SymptomCatalogue(symptoms);
+    }
+
+    public SortedSet<String> getSymptoms() {
+        return symptoms;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * ID of a symptom name, or -1 if no rule references it.
+     */
+    public int idOf(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? id : -1;
+    }
+
+    public String nameOf(int id) {
+        return names[id];
+    }
+
+    public SymptomSet encode(Patient patient) {
+        List<Symptom> symptoms = patient.getSymptoms();
+        if (symptoms == null || symptoms.isEmpty()) {
+            return SymptomSet.EMPTY;
+        }
+        BitSet set = new BitSet(names.length);
+        for (Symptom s : symptoms) {
+            int id = s != null ? idOf(s.getName()) : -1;
+            if (id >= 0) {
+                set.set(id);
+            }
+        }
+        return new SymptomSet(set);
+    }
+
+    /**
+     * Hex SHA-256 of the symptom names; changes only when the catalogue does.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    private static String hash(SortedSet<String> symptoms) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String s : symptoms) {
+                digest.update(s.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageColor;
+import com.triage.model.TriageResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable symptom-name to triage colour lookup compiled from the DRL written by
+ * {@link TriageRuleGenerator}.
+ * <p>
+ * Every generated rule has the same shape (one symptom name, or an {@code (or ...)}
+ * of several, in; one colour out), so the whole rule set collapses into a map
+ * holding the highest priority colour per symptom. A rule that does not follow
+ * that shape marks the index as incomplete and the engine keeps using Drools
+ * for it.
+ */
+public final class SymptomIndex {
+
+    private static final Pattern RULE_HEADER = Pattern.compile("^rule\\s+\".*\"$");
+    private static final Pattern SYMPTOM_MATCH = Pattern
+            .compile("^Symptom\\( name == \"((?:[^\"\\\\]|\\\\.)*)\" \\)( from \\$s)?$");
+    private static final Pattern RESULT_INSERT = Pattern
+            .compile("^insert\\(new TriageResult\\(\"(\\w+)\"\\)\\);$");
+    private static final String PATIENT_BINDING = "$p : Patient( $s : symptoms )";
+    // Written by prioritized / flowchart-scoped generation. Salience and category
+    // groups order firing but not which colour wins; flowchart groups scope it.
+    private static final Pattern CATEGORY_ANNOTATION = Pattern.compile("^@category\\(\\d\\)$");
+    private static final Pattern SALIENCE = Pattern.compile("^salience -?\\d+$");
+    private static final Pattern AGENDA_GROUP = Pattern.compile("^agenda-group \"((?:[^\"\\\\]|\\\\.)*)\"$");
+
+    // Never handed out: TriageResult is mutable, so lookups return a copy.
+    private final Map<String, TriageResult> resultBySymptom;
+    // Per flowchart (TriageRuleGenerator.flowchartKey); null unless every rule is flowchart-scoped
+    private final Map<String, Map<String, TriageResult>> resultsByFlowchart;
+    private final int ruleCount;
+    private final int unindexedRuleCount;
+
+    private SymptomIndex(Map<String, TriageResult> resultBySymptom,
+            Map<String, Map<String, TriageResult>> resultsByFlowchart, int ruleCount, int unindexedRuleCount) {
+        this.resultBySymptom = Map.copyOf(resultBySymptom);
+        if (resultsByFlowchart != null) {
+            Map<String, Map<String, TriageResult>> copy = new HashMap<>();
+            resultsByFlowchart.forEach((flowchart, results) -> copy.put(flowchart, Map.copyOf(results)));
+            this.resultsByFlowchart = Map.copyOf(copy);
+        } else {
+            this.resultsByFlowchart = null;
+        }
+        this.ruleCount = ruleCount;
+        this.unindexedRuleCount = unindexedRuleCount;
+    }
+
+    public static SymptomIndex compile(File drlFile) throws IOException {
+        List<String> lines = Files.readAllLines(drlFile.toPath(), StandardCharsets.UTF_8);
+
+        Map<String, TriageResult> resultBySymptom = new HashMap<>();
+        Map<String, Map<String, TriageResult>> resultsByFlowchart = new HashMap<>();
+        boolean scoped = true;
+        int ruleCount = 0;
+        int unindexed = 0;
+
+        boolean inRule = false;
+        boolean supported = true;
+        List<String> symptoms = new ArrayList<>();
+        String color = null;
+        int orBlocks = 0;
+        boolean inOr = false;
+        boolean hasCategory = false;
+        String group = null;
+
+        for (String raw : lines) {
+            String line = raw.trim();
+            if (!inRule) {
+                if (RULE_HEADER.matcher(line).matches()) {
+                    inRule = true;
+                    supported = true;
+                    symptoms.clear();
+                    color = null;
+                    orBlocks = 0;
+                    inOr = false;
+                    hasCategory = false;
+                    group = null;
+                    ruleCount++;
+                } else if (!isPreamble(line)) {
+                    // global, query, function, declare ... nothing the index can model
+                    unindexed++;
+                }
+                continue;
+            }
+
+            if (line.equals("end")) {
+                // Two patterns in one rule are a conjunction, which a map cannot model,
+                // unless they are the branches of a single (or ...)
+                boolean disjunction = orBlocks == 1 && !inOr;
+                if (supported && color != null && !symptoms.isEmpty() && (symptoms.size() == 1 || disjunction)) {
+                    TriageResult result = new TriageResult(color);
+                    String flowchart = flowchartOf(group, hasCategory);
+                    Map<String, TriageResult> flowchartResults = null;
+                    if (flowchart == null) {
+                        scoped = false;
+                    } else {
+                        flowchartResults = resultsByFlowchart.computeIfAbsent(
+                                TriageRuleGenerator.flowchartKey(flowchart), f -> new HashMap<>());
+                    }
+                    for (String symptom : symptoms) {
+                        resultBySymptom.merge(symptom, result, SymptomIndex::higherPriority);
+                        if (flowchartResults != null) {
+                            flowchartResults.merge(symptom, result, SymptomIndex::higherPriority);
+                        }
+                    }
+                } else {
+                    unindexed++;
+                }
+                inRule = false;
+                continue;
+            }
+
+            if (line.isEmpty() || line.equals("when") || line.equals("then") || line.equals(PATIENT_BINDING)
+                    || line.startsWith("//") || SALIENCE.matcher(line).matches()) {
+                continue;
+            }
+            if (CATEGORY_ANNOTATION.matcher(line).matches()) {
+                hasCategory = true;
+                continue;
+            }
+            Matcher agendaGroup = AGENDA_GROUP.matcher(line);
+            if (agendaGroup.matches() && group == null) {
+                group = unescape(agendaGroup.group(1));
+                continue;
+            }
+
+            if (line.equals("(or") && !inOr && symptoms.isEmpty()) {
+                inOr = true;
+                orBlocks++;
+                continue;
+            }
+            if (line.equals(")") && inOr) {
+                inOr = false;
+                continue;
+            }
+
+            Matcher symptom = SYMPTOM_MATCH.matcher(line);
+            if (symptom.matches() && (orBlocks == 0 || inOr)) {
+                symptoms.add(unescape(symptom.group(1)));
+                continue;
+            }
+
+            Matcher insert = RESULT_INSERT.matcher(line);
+            if (insert.matches() && color == null) {
+                color = insert.group(1);
+                continue;
+            }
+
+            supported = false;
+        }
+
+        return new SymptomIndex(resultBySymptom, scoped && ruleCount > 0 ? resultsByFlowchart : null,
+                ruleCount, unindexed);
+    }
+
+    /**
+     * True when every rule in the DRL was folded into the index, i.e. a lookup
+     * gives exactly the same answer as firing the rules.
+     */
+    public boolean isComplete() {
+        return unindexedRuleCount == 0;
+    }
+
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    // The winning colour per symptom, for BitSetTriageEvaluator
+    Map<String, TriageColor> colorsBySymptom() {
+        return colorsOf(resultBySymptom);
+    }
+
+    // Same per flowchart; null unless every rule is flowchart-scoped
+    Map<String, Map<String, TriageColor>> colorsByFlowchart() {
+        if (resultsByFlowchart == null) {
+            return null;
+        }
+        Map<String, Map<String, TriageColor>> colors = new HashMap<>();
+        resultsByFlowchart.forEach((flowchart, results) -> colors.put(flowchart, colorsOf(results)));
+        return colors;
+    }
+
+    public int getUnindexedRuleCount() {
+        return unindexedRuleCount;
+    }
+
+    /**
+     * Same answer as the engine: only the presenting flowchart's rules when the
+     * rules are flowchart-scoped and the flowchart is known, otherwise all rules.
+     */
+    public TriageResult lookup(Patient patient) {
+        Map<String, TriageResult> results = resultBySymptom;
+        String presenting = patient.getPresentingFlowchart();
+        if (resultsByFlowchart != null && presenting != null) {
+            Map<String, TriageResult> flowchartResults = resultsByFlowchart
+                    .get(TriageRuleGenerator.flowchartKey(presenting));
+            if (flowchartResults != null) {
+                results = flowchartResults;
+            }
+        }
+
+        TriageResult best = null;
+        List<Symptom> symptoms = patient.getSymptoms();
+        if (symptoms != null) {
+            for (Symptom s : symptoms) {
+                if (s == null || s.getName() == null) {
+                    continue;
+                }
+                TriageResult r = results.get(s.getName());
+                if (r != null && (best == null || r.getTriageColor().isMoreUrgentThan(best.getTriageColor()))) {
+                    best = r;
+                }
+            }
+        }
+        return new TriageResult(best != null ? best.getTriageColor() : TriageColor.BLUE); // Default
+    }
+
+    // The flowchart named by a rule's agenda group, or null for MAIN / category-only groups
+    private static String flowchartOf(String group, boolean prioritized) {
+        if (group == null) {
+            return null;
+        }
+        if (!prioritized) {
+            return group;
+        }
+        int split = group.lastIndexOf("|" + TriageRuleGenerator.CATEGORY_GROUP);
+        return split > 0 ? group.substring(0, split) : null;
+    }
+
+    private static boolean isPreamble(String line) {
+        return line.isEmpty() || line.startsWith("package ") || line.startsWith("import ") || line.startsWith("//");
+    }
+
+    private static Map<String, TriageColor> colorsOf(Map<String, TriageResult> results) {
+        Map<String, TriageColor> colors = new HashMap<>();
+        results.forEach((symptom, result) -> colors.put(symptom, result.getTriageColor()));
+        return colors;
+    }
+
+    private static TriageResult higherPriority(TriageResult a, TriageResult b) {
+        return b.getTriageColor().isMoreUrgentThan(a.getTriageColor()) ? b : a;
+    }
+
+    private static String unescape(String s) {
+        return s.replace("\\\"", "\"");
+    }
+}
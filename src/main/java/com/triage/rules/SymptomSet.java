@@ -0,0 +1,70 @@
+package com.triage.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A patient's symptoms as catalogue IDs (see {@link SymptomCatalogue#idOf}).
+ * Names the catalogue does not know are dropped: no rule can match them.
+ * Immutable; equal sets compare and hash by their bits.
+ */
+public final class SymptomSet {
+
+    public static final SymptomSet EMPTY = new SymptomSet(new BitSet());
+
+    private final BitSet ids;
+
+    SymptomSet(BitSet ids) {
+        this.ids = ids;
+    }
+
+    public boolean contains(int id) {
+        return ids.get(id);
+    }
+
+    /**
+     * Whether any of these symptoms is also set in {@code other}.
+     */
+    public boolean intersects(BitSet other) {
+        return ids.intersects(other);
+    }
+
+    public boolean isEmpty() {
+        return ids.isEmpty();
+    }
+
+    public int size() {
+        return ids.cardinality();
+    }
+
+    /**
+     * The IDs in ascending order.
+     */
+    public int[] toArray() {
+        return ids.stream().toArray();
+    }
+
+    public List<String> toNames(SymptomCatalogue catalogue) {
+        List<String> names = new ArrayList<>(size());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            names.add(catalogue.nameOf(id));
+        }
+        return names;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof SymptomSet && ids.equals(((SymptomSet) o).ids));
+    }
+
+    @Override
+    public int hashCode() {
+        return ids.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return ids.toString();
+    }
+}
@@ -1,74 +1,561 @@
 package com.triage.rules;
 
 import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageColor;
 import com.triage.model.TriageResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.drools.core.base.ClassObjectType;
+import org.drools.core.definitions.rule.impl.RuleImpl;
+import org.drools.core.impl.StatefulKnowledgeSessionImpl;
+import org.drools.core.rule.GroupElement;
+import org.drools.core.rule.Pattern;
+import org.drools.core.rule.RuleConditionElement;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
-import org.kie.api.builder.KieBuilder;
-import org.kie.api.builder.KieFileSystem;
-import org.kie.api.builder.Message;
-import org.kie.api.runtime.KieContainer;
+import org.kie.api.command.Command;
+import org.kie.api.command.KieCommands;
+import org.kie.api.definition.KiePackage;
+import org.kie.api.definition.rule.Rule;
+import org.kie.api.event.rule.AgendaEventListener;
+import org.kie.api.event.rule.RuleRuntimeEventListener;
+import org.kie.api.runtime.ClassObjectFilter;
+import org.kie.api.runtime.ExecutionResults;
 import org.kie.api.runtime.KieSession;
-import org.kie.internal.io.ResourceFactory;
+import org.kie.api.runtime.StatelessKieSession;
+import org.kie.api.runtime.rule.FactHandle;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
-public class TriageEngine {
+public class TriageEngine implements TriageEvaluator {
+
+    private static final String RESULTS_OUT = "results";
+    private static final String FIRED_OUT = "fired";
+    static final ClassObjectFilter RESULT_FILTER = new ClassObjectFilter(TriageResult.class);
 
     private String drlPath = "generated_rules/triage.drl";
-    private KieContainer kContainer;
+    private KieBase kBase;
+    private boolean usePrecompiled = true;
+    private EngineMode mode = EngineMode.DROOLS;
+    private SymptomIndex symptomIndex;
+
+    private SessionStrategy sessionStrategy = SessionStrategy.PER_REQUEST;
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private KieCommands commands;
+    private boolean prioritized;
+    private boolean flowchartScoped;
+    // Agenda groups in the order their focus is pushed, so the last one is
+    // evaluated first; empty when everything lives in MAIN
+    private List<String> allGroups = new ArrayList<>();
+    private Map<String, List<String>> groupsByFlowchart = new HashMap<>();
+    private StatelessKieSession statelessSession;
+    private BlockingQueue<KieSession> sessionPool;
+    private long patientSessionIdleMinutes = 60;
+    private long maxPatientSessions = 10_000;
+    private Cache<String, PatientSession> patientSessions;
+    private int traceCapacity = 128;
+    private RuleProfile ruleProfile;
+
+    // An empty composite hands out no-op meters until a real registry is set
+    private EngineMetrics metrics = new EngineMetrics(new CompositeMeterRegistry());
+    private int ruleCount;
+    private long loadTimeMillis;
 
     public void setDrlPath(String drlPath) {
         this.drlPath = drlPath;
     }
 
-    public void init() {
-        KieServices ks = KieServices.Factory.get();
-        KieFileSystem kfs = ks.newKieFileSystem();
+    /**
+     * Load the serialized KieBase written next to the DRL by {@link KieBaseCache}
+     * instead of compiling the DRL, as long as it matches the DRL's contents.
+     */
+    public void setUsePrecompiled(boolean usePrecompiled) {
+        this.usePrecompiled = usePrecompiled;
+    }
+
+    public void setMode(EngineMode mode) {
+        this.mode = mode;
+    }
+
+    public EngineMode getMode() {
+        return mode;
+    }
+
+    public void setSessionStrategy(SessionStrategy sessionStrategy) {
+        this.sessionStrategy = sessionStrategy;
+    }
+
+    public SessionStrategy getSessionStrategy() {
+        return sessionStrategy;
+    }
+
+    /**
+     * Maximum number of idle sessions kept by {@link SessionStrategy#POOLED}.
+     * Callers beyond this get a fresh session that is disposed after use.
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * How long {@link SessionStrategy#PER_PATIENT} keeps a patient's session
+     * after its last triage.
+     */
+    public void setPatientSessionIdleMinutes(long patientSessionIdleMinutes) {
+        this.patientSessionIdleMinutes = patientSessionIdleMinutes;
+    }
+
+    /**
+     * Most patient sessions kept open at once; the least recently used go first.
+     */
+    public void setMaxPatientSessions(long maxPatientSessions) {
+        this.maxPatientSessions = maxPatientSessions;
+    }
+
+    /**
+     * Most fired rules listed by {@link #explainTriage}; any more are only counted.
+     */
+    public void setTraceCapacity(int traceCapacity) {
+        this.traceCapacity = traceCapacity;
+    }
 
+    /**
+     * Count activations and fires per rule into {@code ruleProfile} from every
+     * session this engine opens. Null (the default) keeps the listener off.
+     */
+    public void setRuleProfile(RuleProfile ruleProfile) {
+        this.ruleProfile = ruleProfile;
+    }
+
+    public void setMeterRegistry(MeterRegistry registry) {
+        this.metrics = new EngineMetrics(registry);
+    }
+
+    /**
+     * True when every loaded rule carries a category (see
+     * {@link TriageRuleGenerator#setPrioritized}); Drools then fires the
+     * category groups from Red down and stops after the first rule.
+     */
+    public boolean isPrioritized() {
+        return prioritized;
+    }
+
+    /**
+     * True when every loaded rule sits in a flowchart's agenda group (see
+     * {@link TriageRuleGenerator#setFlowchartScoped}); a patient with a known
+     * presenting flowchart is then only evaluated against that flowchart.
+     */
+    public boolean isFlowchartScoped() {
+        return flowchartScoped;
+    }
+
+    /**
+     * Number of rules in the loaded KieBase.
+     */
+    @Override
+    public int getRuleCount() {
+        return ruleCount;
+    }
+
+    /**
+     * Wall-clock time the last {@link #init()} took, compile or cache load included.
+     */
+    @Override
+    public long getLoadTimeMillis() {
+        return loadTimeMillis;
+    }
+
+    @Override
+    public void init() {
+        long start = System.nanoTime();
         File drlFile = new File(this.drlPath);
         if (!drlFile.exists()) {
             throw new RuntimeException("Rules file not found: " + drlFile.getAbsolutePath());
         }
 
-        kfs.write(ResourceFactory.newFileResource(drlFile));
-        KieBuilder kb = ks.newKieBuilder(kfs).buildAll();
+        kBase = usePrecompiled ? KieBaseCache.loadOrCompile(drlFile) : KieBaseCache.compile(drlFile);
+        commands = KieServices.Factory.get().getCommands();
+        ruleCount = kBase.getKiePackages().stream().mapToInt(p -> p.getRules().size()).sum();
+        loadAgendaGroups();
+        if (ruleProfile != null) {
+            List<String> names = new ArrayList<>(ruleCount);
+            for (KiePackage pkg : kBase.getKiePackages()) {
+                for (Rule rule : pkg.getRules()) {
+                    names.add(rule.getName());
+                }
+            }
+            ruleProfile.track(names);
+        }
 
-        if (kb.getResults().hasMessages(Message.Level.ERROR)) {
-            throw new RuntimeException("Build Errors:\n" + kb.getResults().toString());
+        close();
+        statelessSession = null;
+        if (sessionStrategy == SessionStrategy.STATELESS) {
+            statelessSession = kBase.newStatelessKieSession();
+            if (ruleProfile != null) {
+                statelessSession.addEventListener(ruleProfile);
+            }
+        }
+        sessionPool = sessionStrategy == SessionStrategy.POOLED ? new ArrayBlockingQueue<>(Math.max(1, poolSize))
+                : null;
+        patientSessions = null;
+        if (sessionStrategy == SessionStrategy.PER_PATIENT) {
+            if (matchesSymptomFacts()) {
+                patientSessions = newPatientSessions();
+            } else {
+                System.out.println("Per-patient sessions skipped: rules read symptoms from the patient"
+                        + " (per-symptom layout), so every change re-evaluates every rule; using per-request");
+            }
         }
 
-        kContainer = ks.newKieContainer(kb.getKieModule().getReleaseId());
+        symptomIndex = null;
+        if (mode == EngineMode.INDEXED) {
+            try {
+                SymptomIndex index = SymptomIndex.compile(drlFile);
+                if (index.isComplete()) {
+                    symptomIndex = index;
+                } else {
+                    System.out.println("Symptom index skipped: " + index.getUnindexedRuleCount()
+                            + " rule(s) cannot be indexed, using Drools");
+                }
+            } catch (IOException e) {
+                System.out.println("Symptom index skipped: " + e.getMessage() + ", using Drools");
+            }
+        }
+        loadTimeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
     }
 
+    @Override
     public TriageResult executeTriage(Patient patient) {
-        KieSession kSession = kContainer.newKieSession();
+        SymptomIndex index = symptomIndex;
+        if (index != null) {
+            return index.lookup(patient);
+        }
+        return executeWithDrools(patient);
+    }
+
+    /**
+     * Fires the rules in a fresh session with a trace attached, whatever the mode
+     * and session strategy: the index fires nothing, and a shared or per-patient
+     * session would only show part of the rules. Untraced calls never see the
+     * listener.
+     */
+    @Override
+    public TriageResult explainTriage(Patient patient) {
+        long start = System.nanoTime();
+        KieSession kSession = newSession();
+        metrics.sessionCreate.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        RuleTrace trace = new RuleTrace(traceCapacity);
+        kSession.addEventListener((AgendaEventListener) trace);
+        kSession.addEventListener((RuleRuntimeEventListener) trace);
+        try {
+            TriageResult result = fire(kSession, patient);
+            result.setRulesFired(trace.getFired());
+            result.setFiredRules(trace.toList());
+            return result;
+        } finally {
+            kSession.dispose();
+        }
+    }
+
+    private TriageResult executeWithDrools(Patient patient) {
+        switch (sessionStrategy) {
+            case STATELESS:
+                return executeStateless(patient);
+            case POOLED:
+                return executePooled(patient);
+            case PER_PATIENT:
+                return executeForPatient(patient);
+            default:
+                return executePerRequest(patient);
+        }
+    }
+
+    private TriageResult executePerRequest(Patient patient) {
+        long start = System.nanoTime();
+        KieSession kSession = newSession();
+        metrics.sessionCreate.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return fire(kSession, patient);
+        } finally {
+            kSession.dispose();
+        }
+    }
+
+    private TriageResult executeStateless(Patient patient) {
+        // Rules insert(new TriageResult(...)); collect them as part of the same batch
+        List<Command<?>> batch = new ArrayList<>(9);
+        batch.add(commands.newInsert(patient));
+        batch.add(commands.newInsertElements(symptomFacts(patient)));
+        for (String group : focusFor(patient)) {
+            batch.add(commands.newAgendaGroupSetFocus(group));
+        }
+        if (prioritized) {
+            // The public command takes a limit or an out identifier, not both; the
+            // count follows from the results, as every generated rule inserts one
+            batch.add(commands.newFireAllRules(1));
+        } else {
+            batch.add(commands.newFireAllRules(FIRED_OUT));
+        }
+        batch.add(commands.newGetObjects(RESULT_FILTER, RESULTS_OUT));
+
+        EngineMetrics m = metrics;
+        long start = System.nanoTime();
+        ExecutionResults results = statelessSession.execute(commands.newBatchExecution(batch));
+        long fired = System.nanoTime();
+        m.fireAllRules.record(fired - start, TimeUnit.NANOSECONDS);
+        Collection<?> found = (Collection<?>) results.getValue(RESULTS_OUT);
+        m.rulesFired.record(prioritized ? found.size() : (Integer) results.getValue(FIRED_OUT));
+
+        TriageResult result = selectResult(found);
+        m.resultSelect.record(System.nanoTime() - fired, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    private TriageResult executePooled(Patient patient) {
+        long start = System.nanoTime();
+        BlockingQueue<KieSession> pool = sessionPool;
+        KieSession kSession = pool.poll();
+        if (kSession == null) {
+            kSession = newSession();
+        }
+        metrics.sessionCreate.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        try {
+            return fire(kSession, patient);
+        } finally {
+            release(pool, kSession);
+        }
+    }
+
+    private TriageResult executeForPatient(Patient patient) {
+        if (patientSessions == null || patient.getId() == null) {
+            return executePerRequest(patient);
+        }
+        long start = System.nanoTime();
+        PatientSession session = patientSessions.get(patient.getId(), id -> new PatientSession(newSession()));
+        metrics.sessionCreate.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        TriageResult result = session.retriage(patient, focusFor(patient), prioritized, metrics);
+        // Null if the session was evicted or closed while this call held it
+        return result != null ? result : executePerRequest(patient);
+    }
+
+    private KieSession newSession() {
+        KieSession kSession = kBase.newKieSession();
+        if (ruleProfile != null) {
+            kSession.addEventListener(ruleProfile);
+        }
+        return kSession;
+    }
+
+    private TriageResult fire(KieSession kSession, Patient patient) {
+        EngineMetrics m = metrics;
+        long start = System.nanoTime();
         kSession.insert(patient);
+        for (Symptom symptom : symptomFacts(patient)) {
+            kSession.insert(symptom);
+        }
+        for (String group : focusFor(patient)) {
+            kSession.getAgenda().getAgendaGroup(group).setFocus();
+        }
+        int fired = prioritized ? kSession.fireAllRules(1) : kSession.fireAllRules();
+        long fireEnd = System.nanoTime();
+        m.fireAllRules.record(fireEnd - start, TimeUnit.NANOSECONDS);
+        m.rulesFired.record(fired);
+
+        TriageResult result = selectResult(kSession.getObjects(RESULT_FILTER));
+        m.resultSelect.record(System.nanoTime() - fireEnd, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    // The patient's flowchart groups, or every group when the flowchart is
+    // missing or not in the rules
+    private List<String> focusFor(Patient patient) {
+        String flowchart = patient.getPresentingFlowchart();
+        if (flowchartScoped && flowchart != null) {
+            List<String> groups = groupsByFlowchart.get(TriageRuleGenerator.flowchartKey(flowchart));
+            if (groups != null) {
+                return groups;
+            }
+        }
+        return allGroups;
+    }
+
+    /*
+     * Work out the focus order from the rules' agenda groups. Prioritized rules
+     * are pushed from Blue up so Red is on top of the focus stack and evaluated
+     * first; unprioritized flowchart groups can go in any order.
+     */
+    private void loadAgendaGroups() {
+        List<Rule> rules = kBase.getKiePackages().stream().flatMap(p -> p.getRules().stream())
+                .collect(Collectors.toList());
+        prioritized = !rules.isEmpty();
+        for (Rule rule : rules) {
+            prioritized &= rule.getMetaData().containsKey(TriageRuleGenerator.CATEGORY_METADATA);
+        }
 
-        List<TriageResult> results = new ArrayList<>();
-        // We can use a global or query, or just insert an empty result and let rules
-        // update it?
-        // My rules use: insert(new TriageResult("Color"));
+        Map<String, Integer> categoryByGroup = new HashMap<>();
+        Map<String, String> flowchartByGroup = new HashMap<>();
+        boolean scoped = !rules.isEmpty();
+        for (Rule rule : rules) {
+            if (!(rule instanceof RuleImpl) || ((RuleImpl) rule).isMainAgendaGroup()) {
+                scoped = false;
+                continue;
+            }
+            String group = ((RuleImpl) rule).getAgendaGroup();
+            String flowchart;
+            if (prioritized) {
+                int split = group.lastIndexOf("|" + TriageRuleGenerator.CATEGORY_GROUP);
+                flowchart = split > 0 ? group.substring(0, split) : null;
+                categoryByGroup.put(group, Integer.parseInt(
+                        String.valueOf(rule.getMetaData().get(TriageRuleGenerator.CATEGORY_METADATA))));
+            } else {
+                flowchart = group;
+                categoryByGroup.put(group, 0);
+            }
+            if (flowchart == null) {
+                scoped = false;
+            } else {
+                flowchartByGroup.put(group, flowchart);
+            }
+        }
+        flowchartScoped = scoped;
 
-        kSession.fireAllRules();
+        Comparator<String> focusOrder = Comparator.comparing((String g) -> categoryByGroup.get(g)).reversed()
+                .thenComparing(Comparator.naturalOrder());
+        List<String> groups = new ArrayList<>(categoryByGroup.keySet());
+        groups.sort(focusOrder);
+        allGroups = groups;
 
-        // Collect objects
-        for (Object obj : kSession.getObjects()) {
-            if (obj instanceof TriageResult) {
-                results.add((TriageResult) obj);
+        Map<String, List<String>> byFlowchart = new HashMap<>();
+        if (scoped) {
+            for (String group : groups) {
+                byFlowchart.computeIfAbsent(TriageRuleGenerator.flowchartKey(flowchartByGroup.get(group)),
+                        f -> new ArrayList<>()).add(group);
             }
         }
-        kSession.dispose();
+        groupsByFlowchart = byFlowchart;
+    }
+
+    // Grouped rules (DrlLayout.GROUPED) match Symptom facts directly; per-symptom
+    // rules read them from the patient and ignore these
+    private static List<Symptom> symptomFacts(Patient patient) {
+        List<Symptom> symptoms = patient.getSymptoms();
+        if (symptoms == null) {
+            return new ArrayList<>();
+        }
+        List<Symptom> facts = new ArrayList<>(symptoms.size());
+        for (Symptom symptom : symptoms) {
+            if (symptom != null) {
+                facts.add(symptom);
+            }
+        }
+        return facts;
+    }
+
+    private void release(BlockingQueue<KieSession> pool, KieSession kSession) {
+        try {
+            if (kSession instanceof StatefulKnowledgeSessionImpl) {
+                // Clears node memories wholesale instead of propagating one delete per fact
+                ((StatefulKnowledgeSessionImpl) kSession).reset();
+                // reset() drops the session's listeners as well
+                if (ruleProfile != null && !kSession.getAgendaEventListeners().contains(ruleProfile)) {
+                    kSession.addEventListener(ruleProfile);
+                }
+            } else {
+                for (FactHandle handle : new ArrayList<FactHandle>(kSession.getFactHandles())) {
+                    kSession.delete(handle);
+                }
+            }
+        } catch (RuntimeException e) {
+            kSession.dispose();
+            return;
+        }
+        if (!pool.offer(kSession)) {
+            kSession.dispose();
+        }
+    }
+
+    // True when every rule matches Symptom facts directly (DrlLayout.GROUPED), so
+    // inserting or deleting one symptom only touches the rules that name it
+    private boolean matchesSymptomFacts() {
+        for (KiePackage kPackage : kBase.getKiePackages()) {
+            for (Rule rule : kPackage.getRules()) {
+                if (!(rule instanceof RuleImpl) || !matchesSymptomFacts(((RuleImpl) rule).getLhs())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesSymptomFacts(RuleConditionElement element) {
+        if (element instanceof Pattern) {
+            Pattern pattern = (Pattern) element;
+            return pattern.getSource() == null && pattern.getObjectType() instanceof ClassObjectType
+                    && ((ClassObjectType) pattern.getObjectType()).getClassType() == Symptom.class;
+        }
+        if (element instanceof GroupElement) {
+            for (RuleConditionElement child : ((GroupElement) element).getChildren()) {
+                if (!matchesSymptomFacts(child)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private Cache<String, PatientSession> newPatientSessions() {
+        return Caffeine.newBuilder()
+                .maximumSize(maxPatientSessions)
+                .expireAfterAccess(patientSessionIdleMinutes, TimeUnit.MINUTES)
+                // Expire idle sessions on time even when no requests come in
+                .scheduler(Scheduler.systemScheduler())
+                .removalListener((String id, PatientSession session, RemovalCause cause) -> session.dispose())
+                .build();
+    }
+
+    /**
+     * Dispose the idle pooled sessions and every patient session.
+     */
+    @Override
+    public void close() {
+        if (sessionPool != null) {
+            KieSession kSession;
+            while ((kSession = sessionPool.poll()) != null) {
+                kSession.dispose();
+            }
+        }
+        if (patientSessions != null) {
+            patientSessions.invalidateAll();
+        }
+    }
 
-        // Determine highest priority (lowest number)
+    // Determine highest priority (lowest number)
+    static TriageResult selectResult(Collection<?> results) {
         TriageResult finalResult = null;
-        for (TriageResult r : results) {
-            if (finalResult == null || r.getPriority() < finalResult.getPriority()) {
+        for (Object obj : results) {
+            TriageResult r = (TriageResult) obj;
+            if (finalResult == null || r.getTriageColor().isMoreUrgentThan(finalResult.getTriageColor())) {
                 finalResult = r;
             }
         }
 
-        return finalResult != null ? finalResult : new TriageResult("Blue"); // Default
+        return finalResult != null ? finalResult : new TriageResult(TriageColor.BLUE); // Default
     }
 }
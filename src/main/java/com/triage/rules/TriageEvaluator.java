@@ -0,0 +1,58 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.TriageResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Answers triage requests from one generated rule set. An evaluator is
+ * configured, {@link #init() initialised} once and then shared by every
+ * request thread until the rules are reloaded.
+ */
+public interface TriageEvaluator {
+
+    /**
+     * Load the rules; throws if they cannot be loaded.
+     */
+    void init();
+
+    TriageResult executeTriage(Patient patient);
+
+    /**
+     * Triage one patient and record the rules that fired on the result. Evaluators
+     * that answer without firing rules return the plain result.
+     */
+    default TriageResult explainTriage(Patient patient) {
+        return executeTriage(patient);
+    }
+
+    /**
+     * Triage a list of patients, returning results in the same order.
+     */
+    default List<TriageResult> executeTriageBatch(List<Patient> patients) {
+        List<TriageResult> results = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            results.add(executeTriage(patient));
+        }
+        return results;
+    }
+
+    /**
+     * Number of rules the evaluator was built from.
+     */
+    int getRuleCount();
+
+    /**
+     * Wall-clock time the last {@link #init()} took.
+     */
+    long getLoadTimeMillis();
+
+    /**
+     * Release anything held between requests once the evaluator has been
+     * replaced and the last call on it has returned.
+     */
+    default void close() {
+    }
+}
@@ -1,149 +1,722 @@
 package com.triage.rules;
 
+import com.triage.model.TriageColor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TriageRuleGenerator {
 
-    static class TriageRule {
-        String flowchart;
-        String symptom;
-        int category;
+    /** Rule metadata key holding the category (1-5) of a prioritized rule. */
+    static final String CATEGORY_METADATA = "category";
+    static final String CATEGORY_GROUP = "category-";
 
-        public TriageRule(String flowchart, String symptom, int category) {
+    /**
+     * Told about every page read from the PDF. Called from the extraction
+     * workers, so implementations must be thread-safe. Throwing
+     * {@link CancellationException} abandons the run before anything is written.
+     */
+    public interface ProgressListener {
+        void pagesRead(int done, int total);
+    }
+
+    /** A line of text as handed to writeString, with the position of its first glyph. */
+    static class TextLine {
+        final String text;
+        final float x;
+        final float y;
+
+        TextLine(String text, float x, float y) {
+            this.text = text;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /** A rule as written to the DRL, collected first so a profile can reorder them. */
+    private static class DrlRule {
+        final String name;
+        final String flowchart;
+        final int category;
+        final Collection<String> symptoms;
+
+        DrlRule(String name, String flowchart, int category, Collection<String> symptoms) {
+            this.name = name;
             this.flowchart = flowchart;
-            this.symptom = symptom.replace("", "").trim();
             this.category = category;
+            this.symptoms = symptoms;
         }
     }
 
-    private List<TriageRule> rules = new ArrayList<>();
+    /**
+     * Line-by-line parser state. A fresh one is used for every pass so a partial
+     * re-parse starts exactly as a full one does at a flowchart title.
+     */
+    private static class Parser {
+        private final List<RuleManifest.Segment> segments = new ArrayList<>();
+        private RuleManifest.Segment currentFlowchart = null;
+        private List<String> currentSymptoms = new ArrayList<>();
+        private Integer currentCategory = null;
 
-    // Parser State
-    private String currentFlowchart = null;
-    private List<String> currentSymptoms = new ArrayList<>();
-    private Integer currentCategory = null;
+        private void processLine(TextLine line, int page, int lineIndex) {
+            String text = line.text;
+            float x = line.x;
+            float y = line.y;
 
-    public void generate(String pdfPath, String outputDrlPath) throws IOException {
-        PDDocument document = PDDocument.load(new File(pdfPath));
-        if (document.isEncrypted()) {
-            throw new IOException("PDF is encrypted");
-        }
-
-        // Custom Stripper to parse line by line with coordinates
-        PDFTextStripper stripper = new PDFTextStripper() {
-            @Override
-            protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
-                if (!textPositions.isEmpty()) {
-                    float x = textPositions.get(0).getXDirAdj();
-                    float y = textPositions.get(0).getYDirAdj();
-                    processLine(text.trim(), x, y);
+            // Skip Header/Footer
+            if (y > 750 || y < 50)
+                return;
+
+            // Detect Title (Flowchart Name)
+            // Consistent at X ~ 48.19, Y ~ 63.17. Relaxed range: X < 60, Y < 100
+            if (x < 60 && y < 100 && text.length() > 5 && !text.startsWith("A =") && !text.startsWith("Page")) {
+                // New Flowchart implies flushing previous block and resetting
+                flushBlock();
+                currentFlowchart = new RuleManifest.Segment(text, page, lineIndex);
+                segments.add(currentFlowchart);
+                currentSymptoms.clear();
+                currentCategory = null;
+                System.out.println("Flowchart found: " + text);
+                return;
+            }
+
+            // Detect Symptom (Starts with bullet)
+            // The bullet comes across as '' or similar. We check startsWith or just X
+            // position column
+            if (text.startsWith("") || (x > 50 && x < 100 && text.length() > 2)) {
+                // It's a symptom line.
+                // If it starts with bullet, remove it.
+                String symptom = text.replace("", "").trim();
+                if (!symptom.isEmpty()) {
+                    currentSymptoms.add(symptom);
                 }
             }
-        };
-        stripper.setSortByPosition(true);
-        stripper.getText(document);
 
-        // Flush any remaining rules
-        flushBlock();
+            // Detect Category Number (1-5) on the right side (X > 490)
+            if (x > 490 && text.matches("[1-5]")) {
+                currentCategory = Integer.parseInt(text);
+            }
 
-        document.close();
+            // Detect "No" which signifies end of a block
+            if (text.equalsIgnoreCase("No") && x > 180 && x < 250) {
+                flushBlock();
+                currentSymptoms.clear();
+                currentCategory = null;
+            }
+        }
 
-        writeDrl(outputDrlPath);
+        private void flushBlock() {
+            if (currentFlowchart != null && currentCategory != null && !currentSymptoms.isEmpty()) {
+                for (String sym : currentSymptoms) {
+                    currentFlowchart.getRules().add(new RuleManifest.Rule(sym, currentCategory));
+                }
+            }
+        }
     }
 
-    private void processLine(String text, float x, float y) {
-        // Skip Header/Footer
-        if (y > 750 || y < 50)
-            return;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private DrlLayout layout = DrlLayout.PER_SYMPTOM;
+    private boolean prioritized = false;
+    private boolean flowchartScoped = false;
+    private ProgressListener progressListener;
+    // Counts by rule name from setProfile, and a hash of them for the manifest
+    private Map<String, RuleProfile.RuleCount> profile;
+    private String profileHash;
+    private int neverFired;
+    // Pages the current run has to read, and how many it has read so far
+    private int pagesToRead;
+    private final AtomicInteger pagesRead = new AtomicInteger();
 
-        // Detect Title (Flowchart Name)
-        // Consistent at X ~ 48.19, Y ~ 63.17. Relaxed range: X < 60, Y < 100
-        if (x < 60 && y < 100 && text.length() > 5 && !text.startsWith("A =") && !text.startsWith("Page")) {
-            // New Flowchart implies flushing previous block and resetting
-            flushBlock();
-            currentFlowchart = text;
-            currentSymptoms.clear();
-            currentCategory = null;
-            System.out.println("Flowchart found: " + currentFlowchart);
+    public void setLayout(DrlLayout layout) {
+        this.layout = layout;
+    }
+
+    /**
+     * Tag every rule with its category and put it in that category's agenda
+     * group (highest salience for Red), so {@link TriageEngine} can fire the
+     * groups from Red down and stop at the first rule that fires.
+     */
+    public void setPrioritized(boolean prioritized) {
+        this.prioritized = prioritized;
+    }
+
+    /**
+     * Put each flowchart's rules in agenda groups of their own so
+     * {@link TriageEngine} can evaluate only the patient's presenting flowchart.
+     * Combined with {@link #setPrioritized} there is one group per flowchart and
+     * category.
+     */
+    public void setFlowchartScoped(boolean flowchartScoped) {
+        this.flowchartScoped = flowchartScoped;
+    }
+
+    /**
+     * Write the rules {@code profile} saw fire most often first, and mark the
+     * loaded rules it never saw fire with a comment. Drools breaks salience ties
+     * by load order, so with prioritized rules the hottest rule of a category is
+     * the first one tried. Rule names keep their PDF-order numbering, so a
+     * profile taken from a reordered DRL still matches. Null (the default)
+     * writes the rules in PDF order.
+     */
+    public void setProfile(RuleProfile.Snapshot profile) {
+        if (profile == null) {
+            this.profile = null;
+            this.profileHash = null;
             return;
         }
+        this.profile = new HashMap<>();
+        for (RuleProfile.RuleCount count : profile.getRules()) {
+            this.profile.put(count.getRule(), count);
+        }
+        StringBuilder counts = new StringBuilder();
+        for (String rule : new TreeSet<>(this.profile.keySet())) {
+            counts.append(rule).append('\t').append(this.profile.get(rule).getFires()).append('\n');
+        }
+        this.profileHash = sha256(counts.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String agendaGroup(int category) {
+        return CATEGORY_GROUP + category;
+    }
+
+    static String agendaGroup(String flowchart, int category) {
+        return flowchart + "|" + agendaGroup(category);
+    }
+
+    // Presenting flowcharts are matched ignoring case and surrounding space
+    static String flowchartKey(String flowchart) {
+        return flowchart.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Number of workers stripping page ranges in parallel; 1 strips the whole
+     * document on the calling thread.
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    public void generate(String pdfPath, String outputDrlPath) throws IOException {
+        File pdf = new File(pdfPath);
+        List<String> pageHashes = hashPages(pdf);
+        startProgress(pageHashes.size());
+        List<RuleManifest.Segment> segments = parse(pdf, 1, pageHashes.size(), 0, 0);
+        write(new File(outputDrlPath), pageHashes, segments);
+    }
+
+    /**
+     * Bring the DRL up to date with the PDF, re-reading only the pages around
+     * flowcharts whose pages changed since the manifest was written. Falls back
+     * to {@link #generate} when there is no usable manifest, the page count
+     * changed or the DRL no longer matches the manifest.
+     *
+     * @return titles of the flowchart segments that were parsed or written again;
+     *         empty if the DRL was already up to date
+     */
+    public List<String> regenerate(String pdfPath, String outputDrlPath) throws IOException {
+        File pdf = new File(pdfPath);
+        File drl = new File(outputDrlPath);
+        List<String> pageHashes = hashPages(pdf);
+        RuleManifest manifest = readManifest(drl);
+
+        if (manifest == null || manifest.getSegments().isEmpty()
+                || manifest.getPageHashes().size() != pageHashes.size()) {
+            startProgress(pageHashes.size());
+            List<RuleManifest.Segment> segments = parse(pdf, 1, pageHashes.size(), 0, 0);
+            write(drl, pageHashes, segments);
+            return titles(segments);
+        }
+
+        int pageCount = pageHashes.size();
+        boolean[] changedPages = new boolean[pageCount + 1];
+        boolean anyChanged = false;
+        for (int i = 0; i < pageCount; i++) {
+            changedPages[i + 1] = !pageHashes.get(i).equals(manifest.getPageHashes().get(i));
+            anyChanged |= changedPages[i + 1];
+        }
+        if (!anyChanged) {
+            startProgress(0);
+            if (manifest.getLayout() == layout && manifest.isPrioritized() == prioritized
+                    && manifest.isFlowchartScoped() == flowchartScoped
+                    && Objects.equals(manifest.getProfileHash(), profileHash)) {
+                return new ArrayList<>();
+            }
+            // Same rules written differently: nothing to parse
+            write(drl, pageHashes, manifest.getSegments());
+            return titles(manifest.getSegments());
+        }
+
+        // A segment spans from its title's page to the next title's page, both
+        // inclusive; the first also owns any pages before it.
+        List<RuleManifest.Segment> old = manifest.getSegments();
+        int count = old.size();
+        boolean[] dirty = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            int first = i == 0 ? 1 : old.get(i).getStartPage();
+            int last = i + 1 < count ? old.get(i + 1).getStartPage() : pageCount;
+            for (int page = first; page <= last && !dirty[i]; page++) {
+                dirty[i] = changedPages[page];
+            }
+        }
+
+        // Re-parse each run of dirty segments up to the title of the next clean
+        // one. That title's page is unchanged, so its line index still holds.
+        // The runs are counted first so progress has a total.
+        int toRead = 0;
+        for (int j = 0; j < count; ) {
+            if (!dirty[j]) {
+                j++;
+                continue;
+            }
+            int first = j == 0 ? 1 : old.get(j).getStartPage();
+            while (j < count && dirty[j]) {
+                j++;
+            }
+            toRead += (j < count ? old.get(j).getStartPage() : pageCount) - first + 1;
+        }
+        startProgress(toRead);
+
+        List<RuleManifest.Segment> segments = new ArrayList<>();
+        List<String> reparsed = new ArrayList<>();
+        int i = 0;
+        while (i < count) {
+            if (!dirty[i]) {
+                segments.add(old.get(i++));
+                continue;
+            }
+            int first = i == 0 ? 1 : old.get(i).getStartPage();
+            while (i < count && dirty[i]) {
+                i++;
+            }
+            RuleManifest.Segment next = i < count ? old.get(i) : null;
+            List<RuleManifest.Segment> window = next != null
+                    ? parse(pdf, first, next.getStartPage(), next.getStartPage(), next.getStartLine())
+                    : parse(pdf, first, pageCount, 0, 0);
+            segments.addAll(window);
+            reparsed.addAll(titles(window));
+        }
+
+        write(drl, pageHashes, segments);
+        return reparsed;
+    }
+
+    /**
+     * True if the DRL was generated from a PDF with exactly these page contents
+     * and has not been edited since.
+     */
+    public boolean isUpToDate(String pdfPath, String outputDrlPath) throws IOException {
+        RuleManifest manifest = readManifest(new File(outputDrlPath));
+        return manifest != null && manifest.getLayout() == layout && manifest.isPrioritized() == prioritized
+                && manifest.isFlowchartScoped() == flowchartScoped
+                && Objects.equals(manifest.getProfileHash(), profileHash)
+                && manifest.getPageHashes().equals(hashPages(new File(pdfPath)));
+    }
+
+    // The manifest of the DRL, or null if there is none or the DRL no longer matches it
+    private static RuleManifest readManifest(File drl) throws IOException {
+        if (!drl.exists()) {
+            return null;
+        }
+        RuleManifest manifest = RuleManifest.read(RuleManifest.manifestFileFor(drl));
+        if (manifest == null || !sha256(Files.readAllBytes(drl.toPath())).equals(manifest.getDrlHash())) {
+            return null;
+        }
+        return manifest;
+    }
+
+    /**
+     * Parse pages {@code first..last}, stopping before line {@code stopLine} of
+     * {@code stopPage} when {@code stopPage} is set (non-zero).
+     */
+    private List<RuleManifest.Segment> parse(File pdf, int first, int last, int stopPage, int stopLine)
+            throws IOException {
+        // Text extraction is the expensive part and each page is independent, so
+        // it runs per page range. The parser below carries state across pages
+        // (a flowchart can continue onto the next page) and runs over the merged
+        // lines in page order, giving the same rules as a single pass.
+        Parser parser = new Parser();
+        List<List<TextLine>> pages = stripPages(pdf, first, last);
+        pages:
+        for (int p = 0; p < pages.size(); p++) {
+            int page = first + p;
+            List<TextLine> lines = pages.get(p);
+            for (int line = 0; line < lines.size(); line++) {
+                if (page == stopPage && line == stopLine) {
+                    break pages;
+                }
+                parser.processLine(lines.get(line), page, line);
+            }
+        }
+
+        // Flush any remaining rules
+        parser.flushBlock();
+        return parser.segments;
+    }
+
+    /**
+     * Write the DRL for segments parsed earlier, in this generator's layout and
+     * with its options, without a manifest. Lets tests lay out the committed
+     * rules differently without the PDF.
+     */
+    void writeRules(String outputDrlPath, List<RuleManifest.Segment> segments) throws IOException {
+        writeDrl(outputDrlPath, segments);
+    }
+
+    private void write(File drl, List<String> pageHashes, List<RuleManifest.Segment> segments) throws IOException {
+        String drlHash = writeDrl(drl.getPath(), segments);
+
+        RuleManifest manifest = new RuleManifest();
+        manifest.setLayout(layout);
+        manifest.setPrioritized(prioritized);
+        manifest.setFlowchartScoped(flowchartScoped);
+        manifest.setProfileHash(profileHash);
+        manifest.setDrlHash(drlHash);
+        manifest.setPageHashes(pageHashes);
+        manifest.setSegments(segments);
+        manifest.write(RuleManifest.manifestFileFor(drl));
+    }
+
+    private static List<String> titles(List<RuleManifest.Segment> segments) {
+        List<String> titles = new ArrayList<>(segments.size());
+        for (RuleManifest.Segment segment : segments) {
+            titles.add(segment.getTitle());
+        }
+        return titles;
+    }
 
-        // Detect Symptom (Starts with bullet)
-        // The bullet comes across as '' or similar. We check startsWith or just X
-        // position column
-        if (text.startsWith("") || (x > 50 && x < 100 && text.length() > 2)) {
-            // It's a symptom line.
-            // If it starts with bullet, remove it.
-            String symptom = text.replace("", "").trim();
-            if (!symptom.isEmpty()) {
-                currentSymptoms.add(symptom);
+    /**
+     * SHA-256 of each page's content streams, rotation and media box; enough to
+     * tell whether the text extracted from the page can have changed.
+     */
+    private static List<String> hashPages(File pdf) throws IOException {
+        try (PDDocument document = load(pdf)) {
+            if (document.isEncrypted()) {
+                throw new IOException("PDF is encrypted");
+            }
+            List<String> hashes = new ArrayList<>(document.getNumberOfPages());
+            MessageDigest digest = newDigest();
+            byte[] buffer = new byte[8192];
+            for (PDPage page : document.getPages()) {
+                digest.update((page.getRotation() + "|" + page.getMediaBox() + "|")
+                        .getBytes(StandardCharsets.UTF_8));
+                try (InputStream in = page.getContents()) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, n);
+                    }
+                }
+                hashes.add(HexFormat.of().formatHex(digest.digest()));
             }
+            return hashes;
         }
+    }
+
+    private static String sha256(byte[] bytes) {
+        return HexFormat.of().formatHex(newDigest().digest(bytes));
+    }
 
-        // Detect Category Number (1-5) on the right side (X > 490)
-        if (x > 490 && text.matches("[1-5]")) {
-            currentCategory = Integer.parseInt(text);
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
+    }
 
-        // Detect "No" which signifies end of a block
-        if (text.equalsIgnoreCase("No") && x > 180 && x < 250) {
-            flushBlock();
-            currentSymptoms.clear();
-            currentCategory = null;
+    private void startProgress(int total) {
+        pagesToRead = total;
+        pagesRead.set(0);
+        if (progressListener != null) {
+            progressListener.pagesRead(0, total);
         }
     }
 
-    private void flushBlock() {
-        if (currentFlowchart != null && currentCategory != null && !currentSymptoms.isEmpty()) {
-            for (String sym : currentSymptoms) {
-                rules.add(new TriageRule(currentFlowchart, sym, currentCategory));
+    private void pageRead() {
+        int done = pagesRead.incrementAndGet();
+        if (progressListener != null) {
+            progressListener.pagesRead(done, pagesToRead);
+        }
+    }
+
+    private List<List<TextLine>> stripPages(File pdf, int first, int last) throws IOException {
+        int pageCount = last - first + 1;
+        int workers = Math.max(1, Math.min(parallelism, pageCount));
+        if (workers == 1) {
+            return stripRange(pdf, first, last);
+        }
+
+        int chunk = (pageCount + workers - 1) / workers;
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            List<Future<List<List<TextLine>>>> ranges = new ArrayList<>();
+            for (int start = first; start <= last; start += chunk) {
+                int from = start;
+                int to = Math.min(last, start + chunk - 1);
+                ranges.add(pool.submit(() -> {
+                    try {
+                        return stripRange(pdf, from, to);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            // Merge in submission (page) order, whatever order the workers finished in
+            List<List<TextLine>> pages = new ArrayList<>(pageCount);
+            for (Future<List<List<TextLine>>> range : ranges) {
+                pages.addAll(range.get());
+            }
+            return pages;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + pdf, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CancellationException) {
+                throw (CancellationException) cause;
+            }
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("Failed to read " + pdf, cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Strip pages {@code first..last} (1-based, inclusive) with a private document
+     * and stripper, returning the lines of each page in order.
+     */
+    private List<List<TextLine>> stripRange(File pdf, int first, int last) throws IOException {
+        List<List<TextLine>> pages = new ArrayList<>(last - first + 1);
+        try (PDDocument document = load(pdf)) {
+            // Custom Stripper to parse line by line with coordinates
+            PDFTextStripper stripper = new PDFTextStripper() {
+                @Override
+                protected void startPage(PDPage page) throws IOException {
+                    pages.add(new ArrayList<>());
+                    super.startPage(page);
+                }
+
+                @Override
+                protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
+                    if (!textPositions.isEmpty()) {
+                        float x = textPositions.get(0).getXDirAdj();
+                        float y = textPositions.get(0).getYDirAdj();
+                        pages.get(pages.size() - 1).add(new TextLine(text.trim(), x, y));
+                    }
+                }
+
+                @Override
+                protected void endPage(PDPage page) throws IOException {
+                    super.endPage(page);
+                    pageRead();
+                }
+            };
+            stripper.setSortByPosition(true);
+            stripper.setStartPage(first);
+            stripper.setEndPage(last);
+            stripper.getText(document);
+        }
+        return pages;
+    }
+
+    // Scratch buffers go to temp files so heap use does not grow with the document
+    private static PDDocument load(File pdf) throws IOException {
+        return PDDocument.load(pdf, MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    /**
+     * Stream the rules as UTF-8 into a temp file next to {@code outputPath} and
+     * move it into place, so readers see either the old DRL or the complete new
+     * one, never a partial file.
+     *
+     * @return SHA-256 of the bytes written
+     */
+    private String writeDrl(String outputPath, List<RuleManifest.Segment> segments) throws IOException {
+        Path target = new File(outputPath).getAbsoluteFile().toPath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        MessageDigest digest = newDigest();
+        int ruleCount;
+        neverFired = 0;
+        try {
+            try (Writer drl = new BufferedWriter(new OutputStreamWriter(
+                    new DigestOutputStream(Files.newOutputStream(temp), digest), StandardCharsets.UTF_8))) {
+                drl.append("package generated_rules;\n\n");
+                drl.append("import com.triage.model.Patient;\n");
+                drl.append("import com.triage.model.Symptom;\n");
+                drl.append("import com.triage.model.TriageResult;\n\n");
+
+                ruleCount = layout == DrlLayout.GROUPED ? appendGroupedRules(drl, segments) : appendRules(drl, segments);
             }
+            moveIntoPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
         }
+        System.out.println("Generated " + ruleCount + " rules to " + outputPath);
+        if (profile != null) {
+            System.out.println("Rules ordered by profile; " + neverFired + " never fired");
+        }
+        return HexFormat.of().formatHex(digest.digest());
     }
 
-    private void writeDrl(String outputPath) throws IOException {
-        StringBuilder drl = new StringBuilder();
-        drl.append("package generated_rules;\n\n");
-        drl.append("import com.triage.model.Patient;\n");
-        drl.append("import com.triage.model.Symptom;\n");
-        drl.append("import com.triage.model.TriageResult;\n\n");
+    private static void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Temp file is in the target's directory, so this only happens on odd file systems
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 
+    private int appendRules(Writer drl, List<RuleManifest.Segment> segments) throws IOException {
+        // Numbered in PDF order, whatever order they are written in
+        List<DrlRule> rules = new ArrayList<>();
         int ruleId = 0;
-        for (TriageRule rule : rules) {
-            ruleId++;
-            drl.append("rule \"Rule_").append(ruleId).append("_").append(escape(rule.flowchart)).append("\"\n");
+        for (RuleManifest.Segment segment : segments) {
+            for (RuleManifest.Rule rule : segment.getRules()) {
+                ruleId++;
+                rules.add(new DrlRule("Rule_" + ruleId + "_" + segment.getTitle(), segment.getTitle(),
+                        rule.getCategory(), List.of(rule.getSymptom())));
+            }
+        }
+        for (DrlRule rule : ordered(rules)) {
+            appendProfileNote(drl, rule.name);
+            drl.append("rule \"").append(escape(rule.name)).append("\"\n");
+            appendAttributes(drl, rule.flowchart, rule.category);
             drl.append("    when\n");
-            // Match if patient has a symptom with this name
-            // We loosely match string values for now
+            // Match if the patient has a symptom with this name
             drl.append("        $p : Patient( $s : symptoms )\n");
-            drl.append("        Symptom( name == \"").append(escape(rule.symptom)).append("\" ) from $s\n");
+            drl.append("        Symptom( name == \"").append(escape(rule.symptoms.iterator().next())).append("\" ) from $s\n");
             drl.append("    then\n");
-            // Wait, Patient doesn't have addTriageResult yet, and TriageResult constructor
-            // needs updating or usage.
-            // Let's assume we insert TriageResult into working memory or add to a list.
-            // For simplicity, let's insert a TriageResult object into memory.
-            // Or better, set it on a global or helper.
-            // Re-reading usage: "execute the rules and return the triage level".
-            // So we can insert TriageResult into KIE session.
             drl.append("        insert(new TriageResult(\"").append(getColor(rule.category)).append("\"));\n");
             drl.append("end\n\n");
         }
+        return rules.size();
+    }
 
-        File outFile = new File(outputPath);
-        if (outFile.getParentFile() != null)
-            outFile.getParentFile().mkdirs();
-        FileWriter writer = new FileWriter(outFile);
-        writer.write(drl.toString());
-        writer.close();
-        System.out.println("Generated " + rules.size() + " rules to " + outputPath);
+    // One rule per flowchart title and category; the "or" is split into one
+    // branch per symptom, each an indexable alpha constraint on Symptom.name
+    private int appendGroupedRules(Writer drl, List<RuleManifest.Segment> segments) throws IOException {
+        Map<String, Map<Integer, Set<String>>> groups = new LinkedHashMap<>();
+        for (RuleManifest.Segment segment : segments) {
+            for (RuleManifest.Rule rule : segment.getRules()) {
+                groups.computeIfAbsent(segment.getTitle(), t -> new LinkedHashMap<>())
+                        .computeIfAbsent(rule.getCategory(), c -> new LinkedHashSet<>())
+                        .add(rule.getSymptom());
+            }
+        }
+
+        List<DrlRule> rules = new ArrayList<>();
+        for (Map.Entry<String, Map<Integer, Set<String>>> flowchart : groups.entrySet()) {
+            for (Map.Entry<Integer, Set<String>> category : flowchart.getValue().entrySet()) {
+                rules.add(new DrlRule(flowchart.getKey() + " - Category " + category.getKey(), flowchart.getKey(),
+                        category.getKey(), category.getValue()));
+            }
+        }
+
+        for (DrlRule rule : ordered(rules)) {
+            appendProfileNote(drl, rule.name);
+            drl.append("rule \"").append(escape(rule.name)).append("\"\n");
+            appendAttributes(drl, rule.flowchart, rule.category);
+            drl.append("    when\n");
+            Collection<String> symptoms = rule.symptoms;
+            String indent = symptoms.size() > 1 ? "            " : "        ";
+            if (symptoms.size() > 1) {
+                drl.append("        (or\n");
+            }
+            for (String symptom : symptoms) {
+                drl.append(indent).append("Symptom( name == \"").append(escape(symptom)).append("\" )\n");
+            }
+            if (symptoms.size() > 1) {
+                drl.append("        )\n");
+            }
+            drl.append("    then\n");
+            drl.append("        insert(new TriageResult(\"").append(getColor(rule.category)).append("\"));\n");
+            drl.append("end\n\n");
+        }
+        return rules.size();
+    }
+
+    // Most fires first; a stable sort keeps PDF order among equal counts and
+    // for rules the profile has not seen
+    private List<DrlRule> ordered(List<DrlRule> rules) {
+        if (profile == null) {
+            return rules;
+        }
+        List<DrlRule> ordered = new ArrayList<>(rules);
+        ordered.sort(Comparator.comparingLong((DrlRule rule) -> fires(rule.name)).reversed());
+        return ordered;
+    }
+
+    private long fires(String rule) {
+        RuleProfile.RuleCount count = profile.get(rule);
+        return count != null ? count.getFires() : 0;
+    }
+
+    // Rules missing from the profile were not loaded while it was taken, so say nothing
+    private void appendProfileNote(Writer drl, String rule) throws IOException {
+        RuleProfile.RuleCount count = profile != null ? profile.get(rule) : null;
+        if (count != null && count.getFires() == 0) {
+            drl.append("// Never fired while profiled (").append(String.valueOf(count.getActivations()))
+                    .append(" activations)\n");
+            neverFired++;
+        }
+    }
+
+    private void appendAttributes(Writer drl, String flowchart, int category) throws IOException {
+        String group = null;
+        if (prioritized) {
+            drl.append("    @").append(CATEGORY_METADATA).append("(").append(String.valueOf(category)).append(")\n");
+            drl.append("    salience ").append(String.valueOf(6 - category)).append("\n");
+            group = flowchartScoped ? agendaGroup(flowchart, category) : agendaGroup(category);
+        } else if (flowchartScoped) {
+            group = flowchart;
+        }
+        if (group != null) {
+            drl.append("    agenda-group \"").append(escape(group)).append("\"\n");
+        }
     }
 
     private String escape(String s) {
@@ -151,18 +724,7 @@ public class TriageRuleGenerator {
     }
 
     private String getColor(int cat) {
-        switch (cat) {
-            case 1:
-                return "Red";
-            case 2:
-                return "Orange";
-            case 3:
-                return "Yellow";
-            case 4:
-                return "Green";
-            default:
-                return "Blue";
-        }
+        return TriageColor.ofCategory(cat).getLabel();
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,101 @@
+package com.triage.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caps how many triage evaluations run at once. Rule evaluation is CPU bound,
+ * so running more than about one per core only adds contention; callers beyond
+ * that wait in a bounded FIFO queue and are turned away once it is full or
+ * their wait times out.
+ */
+public class AdmissionLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final int retryAfterSeconds;
+    private final AtomicInteger queued = new AtomicInteger();
+
+    public AdmissionLimiter(int maxConcurrent, int maxQueued, long queueTimeoutMillis, int retryAfterSeconds) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        // Fair, so waiting callers are admitted in arrival order
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * Take a slot, waiting in the queue if none is free. Every successful call
+     * must be paired with {@link #release()}.
+     *
+     * @throws TriageOverloadedException if the queue is full or the wait times out
+     */
+    public void acquire() {
+        boolean waiting = false;
+        try {
+            // Timed form even for the fast path: the untimed tryAcquire would jump the queue
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                throw new TriageOverloadedException("Triage queue full (" + maxQueued + " waiting)",
+                        retryAfterSeconds);
+            }
+            waiting = true;
+            if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new TriageOverloadedException("Timed out after " + queueTimeoutMillis
+                        + " ms waiting for a triage slot", retryAfterSeconds);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TriageOverloadedException("Interrupted waiting for a triage slot", retryAfterSeconds);
+        } finally {
+            if (waiting) {
+                queued.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Take up to {@code wanted} more slots for a caller that already holds one,
+     * without waiting and only while nobody is queued. Release them with
+     * {@link #release(int)}.
+     *
+     * @return slots taken, possibly 0
+     */
+    public int tryAcquireExtra(int wanted) {
+        int taken = 0;
+        try {
+            // Timed form honours fairness, so a queued caller is never overtaken
+            while (taken < wanted && permits.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+                taken++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return taken;
+    }
+
+    public void release() {
+        permits.release();
+    }
+
+    public void release(int slots) {
+        permits.release(slots);
+    }
+
+    /** Evaluations currently running. */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /** Callers currently waiting for a slot. */
+    public int getQueued() {
+        return queued.get();
+    }
+}
@@ -0,0 +1,16 @@
+package com.triage.service;
+
+/**
+ * When the triage journal forces written batches to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * After every batch. Decisions queued while a batch is being forced go out
+     * together in the next one, so the cost is shared under load.
+     */
+    ALWAYS,
+    /** At most once per interval; a crash can lose up to an interval of decisions. */
+    INTERVAL,
+    /** Never explicitly; the operating system writes the pages back when it likes. */
+    NEVER
+}
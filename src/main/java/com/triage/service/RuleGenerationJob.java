@@ -0,0 +1,241 @@
+package com.triage.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One run of "generate rules from the PDF, then reload them", as reported by
+ * {@code /api/rules/jobs/{id}}. Progress is pushed to SSE subscribers as it
+ * changes.
+ * <p>
+ * State changes are made on the job's monitor and queue a copy of the job as
+ * the event; the events are sent from the dispatcher afterwards, so a slow
+ * subscriber holds up neither the PDF workers nor {@link #cancel()}.
+ */
+public class RuleGenerationJob {
+
+    public enum State {
+        QUEUED,
+        READING_PDF,
+        /** Pages read; writing the DRL and compiling it. Too late to cancel. */
+        WRITING_RULES,
+        RELOADING,
+        SUCCEEDED,
+        FAILED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final Instant createdAt;
+    private volatile State state = State.QUEUED;
+    private volatile int pagesRead;
+    private volatile int pagesTotal;
+    private volatile Instant finishedAt;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+    private final CompletableFuture<RuleGenerationJob> completion = new CompletableFuture<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final Executor dispatcher;
+    private final Queue<Runnable> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+
+    RuleGenerationJob(String id, Executor dispatcher) {
+        this.id = id;
+        this.dispatcher = dispatcher;
+        this.createdAt = Instant.now();
+    }
+
+    // Event payload: the job as it was when the event was queued
+    private RuleGenerationJob(RuleGenerationJob job) {
+        this.id = job.id;
+        this.dispatcher = null;
+        this.createdAt = job.createdAt;
+        this.state = job.state;
+        this.pagesRead = job.pagesRead;
+        this.pagesTotal = job.pagesTotal;
+        this.finishedAt = job.finishedAt;
+        this.error = job.error;
+        this.cancelRequested = job.cancelRequested;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getPagesRead() {
+        return pagesRead;
+    }
+
+    /**
+     * Pages this run has to read; only the changed flowcharts' pages when the
+     * existing rules can be updated incrementally.
+     */
+    public int getPagesTotal() {
+        return pagesTotal;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+    }
+
+    /**
+     * Completes with this job once it has finished, whatever the outcome.
+     */
+    @JsonIgnore
+    public CompletableFuture<RuleGenerationJob> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Ask the job to stop. Only possible until the PDF has been read; after
+     * that the new rules are written and loaded as usual.
+     *
+     * @return false if it is too late to cancel
+     */
+    synchronized boolean cancel() {
+        if (state != State.QUEUED && state != State.READING_PDF) {
+            return false;
+        }
+        cancelRequested = true;
+        return true;
+    }
+
+    void pagesRead(int done, int total) {
+        synchronized (this) {
+            if (cancelRequested) {
+                throw new CancellationException("Cancelled");
+            }
+            if (done < pagesRead && total == pagesTotal) {
+                return; // Workers report out of order; keep the count moving forwards
+            }
+            pagesRead = done;
+            pagesTotal = total;
+            if (done == total) {
+                state = State.WRITING_RULES;
+            }
+            publish();
+        }
+        flush();
+    }
+
+    void moveTo(State next) {
+        synchronized (this) {
+            state = next;
+            publish();
+        }
+        flush();
+    }
+
+    void finish(State outcome, String error) {
+        synchronized (this) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+            this.state = outcome;
+            publish();
+            outbox.add(() -> {
+                for (SseEmitter emitter : subscribers) {
+                    emitter.complete();
+                }
+                subscribers.clear();
+            });
+        }
+        flush();
+        completion.complete(this);
+    }
+
+    void subscribe(SseEmitter emitter) {
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        synchronized (this) {
+            RuleGenerationJob snapshot = new RuleGenerationJob(this);
+            // Queued like a change, so it lands between the events before and after it
+            outbox.add(() -> {
+                if (!send(emitter, snapshot)) {
+                    return;
+                }
+                if (snapshot.isFinished()) {
+                    // Finished before the subscriber arrived: the snapshot is all there is
+                    emitter.complete();
+                } else {
+                    subscribers.add(emitter);
+                }
+            });
+        }
+        flush();
+    }
+
+    // Caller holds the monitor, so events enter the outbox in change order
+    private void publish() {
+        RuleGenerationJob snapshot = new RuleGenerationJob(this);
+        outbox.add(() -> {
+            for (SseEmitter emitter : subscribers) {
+                send(emitter, snapshot);
+            }
+        });
+    }
+
+    private void flush() {
+        if (!outbox.isEmpty()) {
+            dispatcher.execute(this::drain);
+        }
+    }
+
+    // One sender at a time keeps events in order; an event queued while the
+    // sender is finishing up is picked up by the re-check
+    private void drain() {
+        while (!outbox.isEmpty() && sending.compareAndSet(false, true)) {
+            try {
+                Runnable next;
+                while ((next = outbox.poll()) != null) {
+                    next.run();
+                }
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, RuleGenerationJob snapshot) {
+        try {
+            emitter.send(SseEmitter.event().name(snapshot.state.name().toLowerCase()).data(snapshot));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; Spring calls onError/onCompletion as well
+            subscribers.remove(emitter);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.triage.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs rule generation in the background, one job at a time. Triggers that
+ * arrive while a job is queued or running get that job instead of a new one,
+ * so the PDF is never read twice at once.
+ */
+@Service
+public class RuleGenerationJobService {
+
+    private static final int RETAINED_JOBS = 20;
+    private static final long SUBSCRIBER_TIMEOUT_MILLIS = 30 * 60 * 1000L;
+
+    private final RuleGenerationService ruleService;
+    private final TriageService triageService;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "triage-rule-generation");
+        t.setDaemon(true);
+        return t;
+    });
+    // Sends job events to SSE subscribers, off the generation workers
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    // Most recent jobs by id, oldest evicted first
+    private final Map<String, RuleGenerationJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RuleGenerationJob> eldest) {
+            return size() > RETAINED_JOBS;
+        }
+    };
+    private RuleGenerationJob active;
+
+    public RuleGenerationJobService(RuleGenerationService ruleService, TriageService triageService) {
+        this.ruleService = ruleService;
+        this.triageService = triageService;
+    }
+
+    /**
+     * Start a generation job, or return the one already queued or running.
+     */
+    public synchronized RuleGenerationJob start() {
+        if (active != null && !active.isFinished()) {
+            return active;
+        }
+        RuleGenerationJob job = new RuleGenerationJob(UUID.randomUUID().toString(), dispatcher);
+        jobs.put(job.getId(), job);
+        active = job;
+        executor.execute(() -> run(job));
+        return job;
+    }
+
+    public synchronized RuleGenerationJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return false if the job no longer reads the PDF and will run to the end
+     */
+    public boolean cancel(RuleGenerationJob job) {
+        return job.cancel();
+    }
+
+    /**
+     * Stream the job's state to {@code emitter}, starting with a snapshot.
+     */
+    public SseEmitter subscribe(RuleGenerationJob job) {
+        SseEmitter emitter = new SseEmitter(SUBSCRIBER_TIMEOUT_MILLIS);
+        job.subscribe(emitter);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        dispatcher.shutdownNow();
+    }
+
+    private void run(RuleGenerationJob job) {
+        try {
+            job.moveTo(RuleGenerationJob.State.READING_PDF);
+            ruleService.generateRules(job::pagesRead);
+            job.moveTo(RuleGenerationJob.State.RELOADING);
+            triageService.reload(); // Old rules keep serving if this fails
+            job.finish(RuleGenerationJob.State.SUCCEEDED, null);
+        } catch (CancellationException e) {
+            System.out.println("Rule generation " + job.getId() + " cancelled");
+            job.finish(RuleGenerationJob.State.CANCELLED, null);
+        } catch (Throwable e) {
+            // Errors too: an unfinished job would be handed to every later trigger
+            System.out.println("Rule generation " + job.getId() + " failed: " + e);
+            job.finish(RuleGenerationJob.State.FAILED, e.getMessage());
+        }
+    }
+}
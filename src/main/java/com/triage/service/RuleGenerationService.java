@@ -1,10 +1,14 @@
 package com.triage.service;
 
+import com.triage.config.TriageProperties;
+import com.triage.rules.KieBaseCache;
+import com.triage.rules.RuleProfile;
 import com.triage.rules.TriageRuleGenerator;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 @Service
 public class RuleGenerationService {
@@ -12,6 +16,34 @@ public class RuleGenerationService {
     private static final String PDF_PATH = "spec/national-emergency-medicine-programme-irish-childrens-triage-system-icts.pdf";
     private static final String DRL_PATH = "generated_rules/triage.drl";
 
+    private final TriageProperties properties;
+
+    public RuleGenerationService(TriageProperties properties) {
+        this.properties = properties;
+    }
+
+    private TriageRuleGenerator newGenerator() {
+        TriageRuleGenerator generator = new TriageRuleGenerator();
+        generator.setLayout(properties.getGenerator().getLayout());
+        generator.setPrioritized(properties.getGenerator().isPrioritized());
+        generator.setFlowchartScoped(properties.getGenerator().isFlowchartScoped());
+        File profile = profileFile();
+        if (profile != null) {
+            RuleProfile.Snapshot snapshot = RuleProfile.Snapshot.read(profile);
+            if (snapshot == null) {
+                System.out.println("Rule profile " + profile + " not found, writing rules in PDF order");
+            }
+            generator.setProfile(snapshot);
+        }
+        return generator;
+    }
+
+    // The profile to order rules by, or null when triage.generator.profile-file is unset
+    private File profileFile() {
+        String path = properties.getGenerator().getProfileFile();
+        return path == null || path.isBlank() ? null : new File(path);
+    }
+
     public boolean areRulesOutdated() {
         File pdf = new File(PDF_PATH);
         File drl = new File(DRL_PATH);
@@ -22,17 +54,49 @@ public class RuleGenerationService {
         if (!drl.exists()) {
             return true; // Missing rules
         }
-        return pdf.lastModified() > drl.lastModified();
+        File profile = profileFile();
+        if (pdf.lastModified() <= drl.lastModified()
+                && (profile == null || profile.lastModified() <= drl.lastModified())) {
+            return false;
+        }
+        // A newer PDF (e.g. copied or re-downloaded) may still have the same pages,
+        // and a newer profile the same counts
+        try {
+            return !newGenerator().isUpToDate(PDF_PATH, DRL_PATH);
+        } catch (IOException e) {
+            return true;
+        }
     }
 
     public void generateRules() throws IOException {
+        generateRules(null);
+    }
+
+    /**
+     * Same as {@link #generateRules()}, reporting each page read to
+     * {@code listener}. If the listener cancels, the rules on disk are untouched.
+     */
+    public void generateRules(TriageRuleGenerator.ProgressListener listener) throws IOException {
         File pdf = new File(PDF_PATH);
         if (!pdf.exists()) {
             throw new IOException("Source PDF not found at " + PDF_PATH);
         }
 
-        TriageRuleGenerator generator = new TriageRuleGenerator();
-        generator.generate(PDF_PATH, DRL_PATH);
+        // Only flowcharts whose pages changed are parsed again
+        TriageRuleGenerator generator = newGenerator();
+        generator.setProgressListener(listener);
+        List<String> reparsed = generator.regenerate(PDF_PATH, DRL_PATH);
+
+        File drl = new File(DRL_PATH);
+        if (reparsed.isEmpty() && KieBaseCache.cacheFileFor(drl).exists()) {
+            System.out.println("Rules already match " + PDF_PATH);
+            drl.setLastModified(System.currentTimeMillis());
+            return;
+        }
+        System.out.println("Parsed " + reparsed.size() + " flowchart section(s) from " + PDF_PATH);
+
+        // Compile once here so engine start-up can load the KieBase directly
+        KieBaseCache.precompile(drl);
     }
 
     public String getDrlPath() {
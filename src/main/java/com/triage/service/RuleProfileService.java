@@ -0,0 +1,100 @@
+package com.triage.service;
+
+import com.triage.config.TriageProperties;
+import com.triage.rules.RuleProfile;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the rule profile ({@code triage.profile.*}) to its snapshot file
+ * periodically and on shutdown, where a copy can be handed to
+ * {@code triage.generator.profile-file}. The counts in the file are restored on
+ * start-up, so each write adds to the profile of earlier runs instead of
+ * replacing it with the current run's.
+ */
+@Service
+public class RuleProfileService {
+
+    private final TriageService triageService;
+    private final File snapshotFile;
+    private final ScheduledExecutorService scheduler;
+
+    public RuleProfileService(TriageService triageService, TriageProperties properties) {
+        this.triageService = triageService;
+        TriageProperties.Profile settings = properties.getProfile();
+        this.snapshotFile = settings.getSnapshotFile().isBlank() ? null : new File(settings.getSnapshotFile());
+        restoreSnapshot();
+
+        long interval = settings.getSnapshotIntervalSeconds();
+        if (triageService.getRuleProfile() != null && snapshotFile != null && interval > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "triage-rule-profile");
+                t.setDaemon(true);
+                return t;
+            });
+            scheduler.scheduleWithFixedDelay(this::writeSnapshot, interval, interval, TimeUnit.SECONDS);
+        } else {
+            scheduler = null;
+        }
+    }
+
+    /**
+     * The current counts, or null when profiling is off.
+     */
+    public RuleProfile.Snapshot getSnapshot() {
+        RuleProfile profile = triageService.getRuleProfile();
+        return profile != null ? profile.snapshot() : null;
+    }
+
+    /**
+     * Zero the counts. Returns false when profiling is off.
+     */
+    public boolean reset() {
+        RuleProfile profile = triageService.getRuleProfile();
+        if (profile == null) {
+            return false;
+        }
+        profile.reset();
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            writeSnapshot();
+        }
+    }
+
+    private void restoreSnapshot() {
+        RuleProfile profile = triageService.getRuleProfile();
+        if (profile == null || snapshotFile == null) {
+            return;
+        }
+        RuleProfile.Snapshot previous = RuleProfile.Snapshot.read(snapshotFile);
+        if (previous != null) {
+            profile.restore(previous);
+            System.out.println("Rule profile continues from " + snapshotFile + " (" + previous.getFires()
+                    + " fires since " + previous.getSince() + ")");
+        }
+    }
+
+    private void writeSnapshot() {
+        RuleProfile profile = triageService.getRuleProfile();
+        if (profile == null || snapshotFile == null) {
+            return;
+        }
+        try {
+            profile.snapshot().write(snapshotFile);
+        } catch (IOException e) {
+            // Counting goes on; the next interval tries again
+            System.out.println("Could not write rule profile to " + snapshotFile + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.triage.service;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.rules.SymptomCatalogue;
+import com.triage.rules.SymptomSet;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * What a cached triage result depends on: the patient's symptoms as catalogue
+ * IDs (so order and duplicates do not matter), the age band, the presenting
+ * flowchart and the rule-set version that produced it.
+ * <p>
+ * The generated rules only match symptom names, so symptom values are left
+ * out. Age is banded rather than exact so repeat presentations still hit once
+ * rules start to depend on it. Names missing from the catalogue are kept as
+ * strings, in case a hand-edited DRL matches symptoms the catalogue misses.
+ */
+final class TriageCacheKey {
+
+    private final SymptomSet symptoms;
+    private final List<String> unknownSymptoms;
+    private final int ageBand;
+    private final String flowchart;
+    private final long rulesVersion;
+    private final int hash;
+
+    private TriageCacheKey(SymptomSet symptoms, List<String> unknownSymptoms, int ageBand, String flowchart,
+                           long rulesVersion) {
+        this.symptoms = symptoms;
+        this.unknownSymptoms = unknownSymptoms;
+        this.ageBand = ageBand;
+        this.flowchart = flowchart;
+        this.rulesVersion = rulesVersion;
+        this.hash = Objects.hash(symptoms, unknownSymptoms, ageBand, flowchart, rulesVersion);
+    }
+
+    static TriageCacheKey of(Patient patient, SymptomCatalogue catalogue, long rulesVersion) {
+        SymptomSet symptoms = catalogue.encode(patient);
+        String flowchart = patient.getPresentingFlowchart();
+        return new TriageCacheKey(symptoms, unknownSymptoms(patient, catalogue), ageBand(patient.getAge()),
+                flowchart != null ? flowchart.trim().toLowerCase(Locale.ROOT) : null, rulesVersion);
+    }
+
+    private static List<String> unknownSymptoms(Patient patient, SymptomCatalogue catalogue) {
+        TreeSet<String> unknown = null;
+        List<Symptom> symptoms = patient.getSymptoms();
+        if (symptoms != null) {
+            for (Symptom s : symptoms) {
+                if (s != null && s.getName() != null && catalogue.idOf(s.getName()) < 0) {
+                    if (unknown == null) {
+                        unknown = new TreeSet<>();
+                    }
+                    unknown.add(s.getName());
+                }
+            }
+        }
+        return unknown != null ? List.copyOf(unknown) : List.of();
+    }
+
+    // Infant, pre-school, school age, adolescent
+    static int ageBand(int age) {
+        if (age < 1) {
+            return 0;
+        }
+        if (age < 5) {
+            return 1;
+        }
+        if (age < 12) {
+            return 2;
+        }
+        return 3;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TriageCacheKey)) {
+            return false;
+        }
+        TriageCacheKey other = (TriageCacheKey) o;
+        return hash == other.hash && ageBand == other.ageBand && rulesVersion == other.rulesVersion
+                && Objects.equals(flowchart, other.flowchart) && symptoms.equals(other.symptoms)
+                && unknownSymptoms.equals(other.unknownSymptoms);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,353 @@
+package com.triage.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Append-only NDJSON journal of triage decisions with a single writer thread.
+ * <p>
+ * Callers only add the entry to a lock-free queue and wake the writer, so no
+ * request waits for the disk. The writer takes everything queued since its
+ * last write as one batch, numbers the entries, writes them with one call and
+ * forces them to disk as {@link FsyncPolicy} says: a slow fsync just makes the
+ * next batch bigger. Segments are rolled once they pass the configured size.
+ * <p>
+ * The queue is bounded; past {@code maxPending} entries new decisions are
+ * dropped and counted rather than held in memory without limit.
+ */
+class TriageJournal {
+
+    private static final int MAX_BATCH = 4096;
+    private static final long IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path directory;
+    private final FsyncPolicy fsync;
+    private final long fsyncIntervalNanos;
+    private final long segmentBytes;
+    private final int maxPending;
+    private final Queue<TriageJournalEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean waiting;
+
+    private final Counter dropped;
+    private final Counter failed;
+    private final DistributionSummary batchSize;
+    private final Timer commitTimer;
+
+    // Writer thread only
+    private FileChannel segment;
+    private long segmentSize;
+    private long nextSequence;
+    private boolean unforced;
+    private long lastForce = System.nanoTime();
+
+    TriageJournal(Path directory, FsyncPolicy fsync, long fsyncIntervalMillis, long segmentBytes, int maxPending,
+            MeterRegistry registry) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.fsyncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, fsyncIntervalMillis));
+        this.segmentBytes = segmentBytes;
+        this.maxPending = maxPending;
+
+        Files.createDirectories(directory);
+        nextSequence = recover() + 1;
+
+        Gauge.builder("triage.journal.pending", pending, AtomicInteger::get)
+                .description("Triage decisions waiting to be written to the journal")
+                .register(registry);
+        dropped = Counter.builder("triage.journal.dropped")
+                .description("Triage decisions not journalled because the queue was full")
+                .register(registry);
+        failed = Counter.builder("triage.journal.failed")
+                .description("Triage decisions lost to a failed journal write")
+                .register(registry);
+        batchSize = DistributionSummary.builder("triage.journal.batch.size")
+                .description("Entries written to the journal per group commit")
+                .register(registry);
+        commitTimer = Timer.builder("triage.journal.commit")
+                .description("Time to write one batch to the journal, fsync included")
+                .register(registry);
+
+        writer = new Thread(this::run, "triage-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queue {@code entry} and return at once.
+     *
+     * @return false if the journal is closed or its queue is full
+     */
+    boolean append(TriageJournalEntry entry) {
+        if (!running) {
+            return false;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            dropped.increment();
+            return false;
+        }
+        enqueue(entry);
+        if (!running && queue.remove(entry)) {
+            // close() got in between; the writer may already have made its last pass
+            pending.decrementAndGet();
+            return false;
+        }
+        if (waiting) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    // Package-private so tests can close the journal in the middle of an append
+    void enqueue(TriageJournalEntry entry) {
+        queue.offer(entry);
+    }
+
+    /**
+     * Write out everything queued so far, force it to disk (unless the policy
+     * is {@link FsyncPolicy#NEVER}) and stop the writer.
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<TriageJournalEntry> batch = new ArrayList<>();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+        while (true) {
+            TriageJournalEntry entry;
+            while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            if (!batch.isEmpty()) {
+                pending.addAndGet(-batch.size());
+                commit(batch, buffer);
+                batch.clear();
+                continue;
+            }
+            if (!running) {
+                // Entries queued before close() was seen are in the queue by now;
+                // later ones are taken back by append
+                if (queue.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            forceIfDue();
+            // Callers unpark us only while waiting is set, so check the queue after setting it
+            waiting = true;
+            if (queue.isEmpty() && running) {
+                LockSupport.parkNanos(this, fsync == FsyncPolicy.INTERVAL ? fsyncIntervalNanos : IDLE_PARK_NANOS);
+            }
+            waiting = false;
+        }
+        closeSegment();
+    }
+
+    private void commit(List<TriageJournalEntry> batch, ByteArrayOutputStream buffer) {
+        long start = System.nanoTime();
+        long committedSize = -1;
+        try {
+            if (segment == null) {
+                openSegment();
+            }
+            committedSize = segmentSize;
+            buffer.reset();
+            for (TriageJournalEntry entry : batch) {
+                entry.setSequence(nextSequence++);
+                buffer.write(TriageJournalReader.MAPPER.writeValueAsBytes(entry));
+                buffer.write('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+            write(segment, bytes);
+            segmentSize += bytes.limit();
+            unforced = true;
+            if (fsync == FsyncPolicy.ALWAYS) {
+                force();
+            } else {
+                forceIfDue();
+            }
+            if (segmentSize >= segmentBytes) {
+                closeSegment();
+            }
+        } catch (IOException e) {
+            // The sequence numbers stay used, leaving a gap where the batch would be
+            failed.increment(batch.size());
+            System.out.println("Could not write " + batch.size() + " triage journal entries: " + e.getMessage());
+            truncateSegment(committedSize);
+            abandonSegment();
+        }
+        batchSize.record(batch.size());
+        commitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Package-private so tests can fail a write partway
+    void write(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(TriageJournalReader.segmentName(nextSequence));
+        boolean created = !Files.exists(file);
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+        if (created && fsync != FsyncPolicy.NEVER) {
+            forceDirectory();
+        }
+    }
+
+    private void forceIfDue() {
+        if (unforced && fsync == FsyncPolicy.INTERVAL && System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+            try {
+                force();
+            } catch (IOException e) {
+                System.out.println("Could not sync the triage journal: " + e.getMessage());
+                abandonSegment();
+            }
+        }
+    }
+
+    private void force() throws IOException {
+        segment.force(false);
+        unforced = false;
+        lastForce = System.nanoTime();
+    }
+
+    private void closeSegment() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            if (unforced && fsync != FsyncPolicy.NEVER) {
+                force();
+            }
+            segment.close();
+        } catch (IOException e) {
+            System.out.println("Could not close triage journal segment: " + e.getMessage());
+        }
+        segment = null;
+    }
+
+    // Cut off whatever part of a failed batch reached the segment, so it does not
+    // end in half a line once abandoned
+    private void truncateSegment(long size) {
+        if (segment == null || size < 0) {
+            return;
+        }
+        try {
+            if (segment.size() > size) {
+                segment.truncate(size);
+            }
+        } catch (IOException e) {
+            // Replay skips a torn last line in any segment
+            System.out.println("Could not truncate triage journal segment after a failed write: " + e.getMessage());
+        }
+    }
+
+    // Next batch starts a new segment, named after its first sequence
+    private void abandonSegment() {
+        if (segment != null) {
+            try {
+                segment.close();
+            } catch (IOException ignored) {
+                // Already failing
+            }
+            segment = null;
+        }
+        unforced = false;
+    }
+
+    // A new segment is only durable once its directory entry is
+    private void forceDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException e) {
+            // Not supported on every platform; the file itself is still forced
+        }
+    }
+
+    /**
+     * Cut a line left half written by a crash off the newest segment, so new
+     * entries start on a line of their own.
+     *
+     * @return sequence of the last entry on disk, 0 for an empty journal
+     */
+    private long recover() throws IOException {
+        List<Path> segments = TriageJournalReader.segments(directory);
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            Path file = segments.get(i);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long size = channel.size();
+                long end = lineStartBefore(channel, size);
+                if (end < size && i == segments.size() - 1) {
+                    System.out.println("Dropping " + (size - end) + " bytes of a partly written entry from " + file);
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+                if (end > 0) {
+                    long start = lineStartBefore(channel, end - 1);
+                    ByteBuffer line = ByteBuffer.allocate((int) (end - 1 - start));
+                    readFully(channel, line, start);
+                    return TriageJournalReader.MAPPER.readValue(line.array(), TriageJournalEntry.class).getSequence();
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Offset just past the last '\n' before limit, or 0 if there is none
+    private static long lineStartBefore(FileChannel channel, long limit) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(8192);
+        long end = limit;
+        while (end > 0) {
+            long start = Math.max(0, end - chunk.capacity());
+            chunk.clear().limit((int) (end - start));
+            readFully(channel, chunk, start);
+            for (int i = chunk.position() - 1; i >= 0; i--) {
+                if (chunk.get(i) == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer into, long position) throws IOException {
+        while (into.hasRemaining()) {
+            if (channel.read(into, position + into.position()) < 0) {
+                throw new IOException("Journal segment shrank while it was being read");
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.triage.service;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageResult;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One triage decision as recorded in the journal, one JSON object per line.
+ */
+@JsonPropertyOrder({ "sequence", "recordedAt", "source", "patientId", "age", "presentingFlowchart", "symptoms",
+        "color", "priority", "rulesHash" })
+public class TriageJournalEntry {
+
+    private long sequence;
+    private Instant recordedAt;
+    private String source;
+    private String patientId;
+    private int age;
+    private String presentingFlowchart;
+    private List<Symptom> symptoms = new ArrayList<>();
+    private String color;
+    private int priority;
+    private String rulesHash;
+
+    public TriageJournalEntry() {
+    }
+
+    TriageJournalEntry(String source, Patient patient, TriageResult result, String rulesHash) {
+        this.recordedAt = Instant.now();
+        this.source = source;
+        this.patientId = patient.getId();
+        this.age = patient.getAge();
+        this.presentingFlowchart = patient.getPresentingFlowchart();
+        if (patient.getSymptoms() != null) {
+            // The caller may reuse the patient; the list is written later on the journal thread
+            this.symptoms = new ArrayList<>(patient.getSymptoms());
+        }
+        this.color = result.getColor();
+        this.priority = result.getPriority();
+        this.rulesHash = rulesHash;
+    }
+
+    /** Position in the journal, from 1; assigned when the entry is written. */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    /** When the decision was handed to the journal, not when it reached disk. */
+    public Instant getRecordedAt() {
+        return recordedAt;
+    }
+
+    public void setRecordedAt(Instant recordedAt) {
+        this.recordedAt = recordedAt;
+    }
+
+    /** Where the decision was made: api, api-batch, waiting-room or gui. */
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public void setPatientId(String patientId) {
+        this.patientId = patientId;
+    }
+
+    public int getAge() {
+        return age;
+    }
+
+    public void setAge(int age) {
+        this.age = age;
+    }
+
+    public String getPresentingFlowchart() {
+        return presentingFlowchart;
+    }
+
+    public void setPresentingFlowchart(String presentingFlowchart) {
+        this.presentingFlowchart = presentingFlowchart;
+    }
+
+    public List<Symptom> getSymptoms() {
+        return symptoms;
+    }
+
+    public void setSymptoms(List<Symptom> symptoms) {
+        this.symptoms = symptoms;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public void setColor(String color) {
+        this.color = color;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * SHA-256 of the DRL that gave the result, as in {@code GET /api/rules}; the
+     * same on every server and across restarts for the same rules.
+     */
+    public String getRulesHash() {
+        return rulesHash;
+    }
+
+    public void setRulesHash(String rulesHash) {
+        this.rulesHash = rulesHash;
+    }
+}
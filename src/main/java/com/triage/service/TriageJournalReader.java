@@ -0,0 +1,138 @@
+package com.triage.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Replays a triage journal directory written by {@link TriageJournalService}.
+ * <p>
+ * The journal is a series of segment files named after the sequence of their
+ * first entry ({@code journal-00000000000000000001.ndjson}), each holding one
+ * {@link TriageJournalEntry} as JSON per line. Reading is safe while the
+ * server is still appending.
+ */
+public final class TriageJournalReader {
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            // Entries written before a field was renamed still replay
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+
+    private TriageJournalReader() {
+    }
+
+    /**
+     * Pass every entry from {@code fromSequence} on to {@code consumer}, oldest
+     * first. A segment may end in a line cut short by a crash, a write in
+     * progress or a failed write the writer could not undo; that line is
+     * skipped. An unreadable line anywhere else is an error.
+     *
+     * @return number of entries passed
+     */
+    public static long replay(File directory, long fromSequence, Consumer<TriageJournalEntry> consumer)
+            throws IOException {
+        List<Path> segments = segments(directory.toPath());
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= fromSequence) {
+                continue; // Ends before fromSequence
+            }
+            Path segment = segments.get(i);
+            boolean newest = i == segments.size() - 1;
+            boolean torn = !endsWithNewline(segment);
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                int lineNumber = 1;
+                String line = reader.readLine();
+                while (line != null) {
+                    String next = reader.readLine();
+                    if (next == null && torn) {
+                        break;
+                    }
+                    if (!line.isEmpty()) {
+                        TriageJournalEntry entry;
+                        try {
+                            entry = MAPPER.readValue(line, TriageJournalEntry.class);
+                        } catch (IOException e) {
+                            if (newest && next == null) {
+                                break; // Appended while we were reading
+                            }
+                            throw new IOException("Unreadable journal entry at " + segment + ":" + lineNumber, e);
+                        }
+                        if (entry.getSequence() >= fromSequence) {
+                            consumer.accept(entry);
+                            count++;
+                        }
+                    }
+                    line = next;
+                    lineNumber++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Every entry in {@code directory}, oldest first.
+     */
+    public static List<TriageJournalEntry> readAll(File directory) throws IOException {
+        List<TriageJournalEntry> entries = new ArrayList<>();
+        replay(directory, 0, entries::add);
+        return entries;
+    }
+
+    /**
+     * Segment files of {@code directory} in sequence order; empty if it does not exist.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded, so name order is sequence order
+            return files.filter(TriageJournalReader::isSegment).sorted().toList();
+        }
+    }
+
+    static String segmentName(long firstSequence) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX);
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+                && name.length() == segmentName(0).length();
+    }
+
+    private static boolean endsWithNewline(Path segment) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "r")) {
+            if (file.length() == 0) {
+                return true;
+            }
+            file.seek(file.length() - 1);
+            return file.read() == '\n';
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.triage.service;
+
+import com.triage.config.TriageProperties;
+import com.triage.model.Patient;
+import com.triage.model.TriageResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Records every triage decision made through the API, the waiting room and
+ * the GUI in the journal configured by {@code triage.journal.*}.
+ */
+@Service
+public class TriageJournalService {
+
+    public static final String SOURCE_API = "api";
+    public static final String SOURCE_API_BATCH = "api-batch";
+    public static final String SOURCE_WAITING_ROOM = "waiting-room";
+    public static final String SOURCE_GUI = "gui";
+
+    private final File directory;
+    // Null when disabled
+    private final TriageJournal journal;
+
+    public TriageJournalService(TriageProperties properties, MeterRegistry meterRegistry) {
+        TriageProperties.Journal settings = properties.getJournal();
+        this.directory = new File(settings.getDirectory());
+        if (settings.isEnabled()) {
+            try {
+                journal = new TriageJournal(directory.toPath(), settings.getFsync(),
+                        settings.getFsyncIntervalMillis(), settings.getSegmentBytes(), settings.getMaxPending(),
+                        meterRegistry);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open triage journal in " + directory.getAbsolutePath(), e);
+            }
+        } else {
+            journal = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Queue the decision for the journal and return without waiting for the
+     * disk; it is durable once the writer's next batch is synced. The entry is
+     * labelled with the rule set that evaluated it, carried on the result.
+     *
+     * @return false if the journal is disabled or too far behind to take it
+     */
+    public boolean record(String source, Patient patient, TriageResult result) {
+        if (journal == null) {
+            return false;
+        }
+        return journal.append(new TriageJournalEntry(source, patient, result, result.getRulesHash()));
+    }
+
+    /**
+     * Replay this server's journal from {@code fromSequence}; see
+     * {@link TriageJournalReader#replay}.
+     */
+    public long replay(long fromSequence, Consumer<TriageJournalEntry> consumer) throws IOException {
+        return TriageJournalReader.replay(directory, fromSequence, consumer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.triage.service;
+
+/**
+ * Thrown when a triage request cannot be admitted because too many are already
+ * running or waiting. Callers should retry after {@link #getRetryAfterSeconds()}.
+ */
+public class TriageOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int retryAfterSeconds;
+
+    public TriageOverloadedException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -1,70 +1,537 @@
 package com.triage.service;
 
+import com.triage.config.TriageProperties;
 import com.triage.model.Patient;
+import com.triage.model.TriageColor;
 import com.triage.model.TriageResult;
+import com.triage.rules.BitSetTriageEvaluator;
+import com.triage.rules.EvaluatorType;
+import com.triage.rules.KieBaseCache;
+import com.triage.rules.RuleProfile;
+import com.triage.rules.SymptomCatalogue;
 import com.triage.rules.TriageEngine;
+import com.triage.rules.TriageEvaluator;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 public class TriageService {
 
-    private TriageEngine engine;
+    /**
+     * An evaluator and the catalogue read from the same DRL. Swapped as one unit so
+     * callers never see the evaluator of one rule set with the symptoms of another.
+     * The version only counts swaps in this process; the hash identifies the DRL
+     * itself, on any server and across restarts.
+     * <p>
+     * Holds one reference for being the current rules and one per call using
+     * them; the evaluator is closed when the last one goes.
+     */
+    private static final class LoadedRules {
+        final TriageEvaluator evaluator;
+        final SymptomCatalogue catalogue;
+        final long version;
+        final String hash;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        LoadedRules(TriageEvaluator evaluator, SymptomCatalogue catalogue, long version, String hash) {
+            this.evaluator = evaluator;
+            this.catalogue = catalogue;
+            this.version = version;
+            this.hash = hash;
+        }
+
+        // False once closed: the rules were replaced and their last call has returned
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                evaluator.close();
+            }
+        }
+    }
+
+    // Slots one batch may hold at once, each evaluating a chunk of it
+    private static final int MAX_BATCH_WORKERS = Runtime.getRuntime().availableProcessors();
+
+    private final AtomicReference<LoadedRules> rules = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "triage-rule-reload");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService batchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private volatile SymptomCatalogue unloadedCatalogue;
+    private volatile Exception lastReloadError;
     private final RuleGenerationService ruleService;
+    private final TriageProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Timer evaluateTimer;
+    private final Timer tracedTimer;
+    private final Counter sampledCounter;
+    private final Map<TriageColor, Counter> resultCounters = new ConcurrentHashMap<>();
+    private final AdmissionLimiter admission;
+    private final Counter rejectedCounter;
+    // Colour per key; null when disabled. TriageResult is mutable, so hits get a fresh one
+    private final Cache<TriageCacheKey, TriageColor> resultCache;
+    // Shared by every engine loaded, so counts survive reloads; null when disabled
+    private final RuleProfile ruleProfile;
 
-    public TriageService(RuleGenerationService ruleService) {
+    public TriageService(RuleGenerationService ruleService, TriageProperties properties,
+            MeterRegistry meterRegistry) {
         this.ruleService = ruleService;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+
+        evaluateTimer = Timer.builder("triage.evaluate")
+                .description("Time to triage one patient, whichever evaluator answers")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        tracedTimer = Timer.builder("triage.evaluate.traced")
+                .description("Time to triage one patient with the fired rules recorded")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        sampledCounter = Counter.builder("triage.trace.sampled")
+                .description("Requests traced because of triage.trace.sample-rate, their trace logged")
+                .register(meterRegistry);
+        Gauge.builder("triage.rules.count", rules, r -> r.get() != null ? r.get().evaluator.getRuleCount() : 0)
+                .description("Rules in the loaded rule set")
+                .register(meterRegistry);
+        Gauge.builder("triage.rules.load.time", rules,
+                r -> r.get() != null ? r.get().evaluator.getLoadTimeMillis() / 1000.0 : 0)
+                .description("Time the last successful rule load took")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+
+        TriageProperties.Admission limits = properties.getAdmission();
+        admission = new AdmissionLimiter(limits.getMaxConcurrent(), limits.getMaxQueued(),
+                limits.getQueueTimeoutMillis(), limits.getRetryAfterSeconds());
+        Gauge.builder("triage.admission.active", admission, AdmissionLimiter::getActive)
+                .description("Triage evaluations running")
+                .register(meterRegistry);
+        Gauge.builder("triage.admission.queued", admission, AdmissionLimiter::getQueued)
+                .description("Triage requests waiting for a slot")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("triage.admission.rejected")
+                .description("Triage requests turned away because the queue was full")
+                .register(meterRegistry);
+
+        if (properties.getCache().isEnabled()) {
+            // Window TinyLFU: one-off symptom combinations do not push out the common ones
+            resultCache = Caffeine.newBuilder()
+                    .maximumSize(properties.getCache().getMaximumSize())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, resultCache, "triage-results");
+        } else {
+            resultCache = null;
+        }
+        ruleProfile = properties.getProfile().isEnabled() ? new RuleProfile() : null;
     }
 
+    /**
+     * Load the rules if nothing has been loaded yet. Failures are recorded, not
+     * thrown, since the rules may simply not have been generated yet.
+     */
     public void init() {
+        if (rules.get() == null) {
+            try {
+                reload();
+            } catch (Exception e) {
+                // Engine stays uninitialized until rules are generated
+            }
+        }
+    }
+
+    /**
+     * Load any existing rules once the server is up, so a headless node serves
+     * triage requests without waiting for the GUI or a reload request.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initOnStartup() {
+        CompletableFuture.runAsync(this::init, reloadExecutor);
+    }
+
+    /**
+     * Compile the current DRL and swap it in. Calls already running keep using
+     * the evaluator they started with, which is closed once the last of them
+     * returns; if the build fails the previous rules keep serving and the error
+     * is rethrown.
+     */
+    public synchronized void reload() {
         try {
-            engine = new TriageEngine();
-            engine.init();
-        } catch (Exception e) {
-            // Log or handle silent failure - engine might be null if rules are missing
-            engine = null;
+            // Hashed before the build reads it; the DRL is only ever replaced whole
+            String hash = KieBaseCache.hash(new File(ruleService.getDrlPath()));
+            TriageEvaluator next = newEvaluator();
+            LoadedRules previous = rules.getAndSet(
+                    new LoadedRules(next, loadCatalogue(), versions.incrementAndGet(), hash));
+            if (previous != null) {
+                previous.release();
+            }
+            lastReloadError = null;
+            if (resultCache != null) {
+                // Keys carry the version, so this only frees the memory sooner
+                resultCache.invalidateAll();
+            }
+        } catch (RuntimeException e) {
+            lastReloadError = e;
+            throw e;
         }
     }
 
+    private TriageEvaluator newEvaluator() {
+        if (properties.getEngine().getEvaluator() == EvaluatorType.BITSET) {
+            BitSetTriageEvaluator bitset = new BitSetTriageEvaluator();
+            bitset.setDrlPath(ruleService.getDrlPath());
+            try {
+                bitset.init();
+                return bitset;
+            } catch (IllegalStateException e) {
+                System.out.println("Bitset evaluator skipped: " + e.getMessage() + ", using Drools");
+            }
+        }
+
+        TriageEngine engine = new TriageEngine();
+        engine.setDrlPath(ruleService.getDrlPath());
+        engine.setUsePrecompiled(properties.getEngine().isPrecompiled());
+        engine.setMode(properties.getEngine().getMode());
+        engine.setSessionStrategy(properties.getEngine().getSessionStrategy());
+        engine.setPoolSize(properties.getEngine().getPoolSize());
+        engine.setPatientSessionIdleMinutes(properties.getEngine().getPatientSessionIdleMinutes());
+        engine.setMaxPatientSessions(properties.getEngine().getMaxPatientSessions());
+        engine.setTraceCapacity(properties.getTrace().getMaxRules());
+        engine.setRuleProfile(ruleProfile);
+        engine.setMeterRegistry(meterRegistry);
+        engine.init();
+        return engine;
+    }
+
+    /**
+     * {@link #reload()} on a background thread. Requests queue up behind each
+     * other, so at most one build runs at a time.
+     */
+    public CompletableFuture<Void> reloadAsync() {
+        return CompletableFuture.runAsync(this::reload, reloadExecutor);
+    }
+
     public boolean isInitialized() {
-        return engine != null;
+        return rules.get() != null;
     }
 
+    /**
+     * Increases every time a rule set is swapped in; 0 while nothing is loaded.
+     */
+    public long getRulesVersion() {
+        LoadedRules current = rules.get();
+        return current != null ? current.version : 0;
+    }
+
+    /**
+     * SHA-256 of the loaded DRL, as recorded in the journal; null while nothing
+     * is loaded.
+     */
+    public String getRulesHash() {
+        LoadedRules current = rules.get();
+        return current != null ? current.hash : null;
+    }
+
+    public Exception getLastReloadError() {
+        return lastReloadError;
+    }
+
+    /**
+     * @throws TriageOverloadedException if too many requests are already running
+     *         or waiting
+     */
     public TriageResult triage(Patient patient) {
-        if (engine == null) {
-            throw new IllegalStateException("Triage Engine not initialized. Please generate rules.");
+        return triage(patient, false);
+    }
+
+    /**
+     * Triage one patient, listing the rules that fired on the result when
+     * {@code explain} is set. Requests picked by {@code triage.trace.sample-rate}
+     * are traced as well, but their trace is logged rather than returned.
+     * Traced requests skip the result cache.
+     *
+     * @throws TriageOverloadedException if too many requests are already running
+     *         or waiting
+     */
+    public TriageResult triage(Patient patient, boolean explain) {
+        LoadedRules loaded = acquire();
+        try {
+            return triage(loaded, patient, explain);
+        } finally {
+            loaded.release();
         }
-        return engine.executeTriage(patient);
     }
 
-    public Set<String> getAvailableSymptoms() {
-        Set<String> symptoms = new TreeSet<>();
-        File drlFile = new File(ruleService.getDrlPath());
-
-        if (!drlFile.exists()) {
-            return symptoms;
-        }
-
-        try (Scanner fileScanner = new Scanner(drlFile)) {
-            while (fileScanner.hasNextLine()) {
-                String line = fileScanner.nextLine().trim();
-                // Match: Symptom( name == "..." )
-                if (line.startsWith("Symptom( name == \"")) {
-                    int start = "Symptom( name == \"".length();
-                    int end = line.lastIndexOf("\"");
-                    if (end > start) {
-                        symptoms.add(line.substring(start, end));
+    private TriageResult triage(LoadedRules loaded, Patient patient, boolean explain) {
+        boolean sampled = !explain && sampled();
+        boolean traced = explain || sampled;
+        TriageCacheKey key = resultCache != null ? TriageCacheKey.of(patient, loaded.catalogue, loaded.version) : null;
+        TriageColor cached = key != null && !traced ? resultCache.getIfPresent(key) : null;
+        if (cached != null) {
+            TriageResult result = new TriageResult(cached);
+            result.setRulesHash(loaded.hash);
+            countResult(result);
+            return result;
+        }
+
+        admit();
+        try {
+            long start = System.nanoTime();
+            TriageResult result;
+            if (traced) {
+                result = loaded.evaluator.explainTriage(patient);
+                tracedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (sampled) {
+                    logSampledTrace(patient, result, loaded.version);
+                }
+            } else {
+                result = loaded.evaluator.executeTriage(patient);
+                evaluateTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            result.setRulesHash(loaded.hash);
+            if (key != null) {
+                resultCache.put(key, result.getTriageColor());
+            }
+            countResult(result);
+            return result;
+        } finally {
+            admission.release();
+        }
+    }
+
+    /**
+     * Admitted as one request holding one slot; the cache misses are split across
+     * as many further slots as are free without anyone waiting, each chunk
+     * evaluated on its own thread.
+     *
+     * @throws TriageOverloadedException if too many requests are already running
+     *         or waiting
+     */
+    public List<TriageResult> triageBatch(List<Patient> patients) {
+        LoadedRules loaded = acquire();
+        try {
+            return triageBatch(loaded, patients);
+        } finally {
+            loaded.release();
+        }
+    }
+
+    private List<TriageResult> triageBatch(LoadedRules loaded, List<Patient> patients) {
+        TriageResult[] results = new TriageResult[patients.size()];
+        TriageCacheKey[] keys = new TriageCacheKey[patients.size()];
+        List<Patient> misses = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            Patient patient = patients.get(i);
+            if (resultCache != null) {
+                keys[i] = TriageCacheKey.of(patient, loaded.catalogue, loaded.version);
+                TriageColor cached = resultCache.getIfPresent(keys[i]);
+                if (cached != null) {
+                    results[i] = new TriageResult(cached);
+                    continue;
+                }
+            }
+            misses.add(patient);
+        }
+
+        if (!misses.isEmpty()) {
+            admit();
+            int slots = 1 + admission.tryAcquireExtra(Math.min(misses.size(), MAX_BATCH_WORKERS) - 1);
+            try {
+                List<TriageResult> evaluated = evaluate(loaded.evaluator, misses, slots);
+                int next = 0;
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i] == null) {
+                        results[i] = evaluated.get(next++);
+                        if (keys[i] != null) {
+                            resultCache.put(keys[i], results[i].getTriageColor());
+                        }
                     }
                 }
+            } finally {
+                admission.release(slots);
             }
-        } catch (FileNotFoundException e) {
-            // Should not happen due to check above
         }
-        return symptoms;
+
+        for (TriageResult result : results) {
+            result.setRulesHash(loaded.hash);
+            countResult(result);
+        }
+        return Arrays.asList(results);
+    }
+
+    public Set<String> getAvailableSymptoms() {
+        return getSymptomCatalogue().getSymptoms();
+    }
+
+    /**
+     * The catalogue read with the loaded rules, so it only changes when the rules
+     * are reloaded. Before any rules load it is read straight from the DRL once.
+     */
+    public SymptomCatalogue getSymptomCatalogue() {
+        LoadedRules loaded = rules.get();
+        if (loaded != null) {
+            return loaded.catalogue;
+        }
+        SymptomCatalogue current = unloadedCatalogue;
+        if (current == null) {
+            // Racing readers may both load it; not worth blocking behind a reload
+            current = loadCatalogue();
+            unloadedCatalogue = current;
+        }
+        return current;
+    }
+
+    /**
+     * Per-rule counts of the Drools engines loaded so far, or null unless
+     * {@code triage.profile.enabled} is set.
+     */
+    public RuleProfile getRuleProfile() {
+        return ruleProfile;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+        batchExecutor.shutdownNow();
+        LoadedRules current = rules.getAndSet(null);
+        if (current != null) {
+            current.release();
+        }
+    }
+
+    private void admit() {
+        try {
+            admission.acquire();
+        } catch (TriageOverloadedException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+    }
+
+    // One chunk per admission slot held: the first on the caller, the rest on virtual threads
+    private List<TriageResult> evaluate(TriageEvaluator evaluator, List<Patient> patients, int slots) {
+        if (slots <= 1) {
+            return evaluator.executeTriageBatch(patients);
+        }
+        int chunk = (patients.size() + slots - 1) / slots;
+        List<Future<List<TriageResult>>> rest = new ArrayList<>();
+        for (int from = chunk; from < patients.size(); from += chunk) {
+            List<Patient> part = patients.subList(from, Math.min(from + chunk, patients.size()));
+            rest.add(batchExecutor.submit(() -> evaluator.executeTriageBatch(part)));
+        }
+        List<TriageResult> results = new ArrayList<>(patients.size());
+        RuntimeException failure = null;
+        try {
+            results.addAll(evaluator.executeTriageBatch(patients.subList(0, chunk)));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // Wait for every chunk even after a failure: our slots are released when we return
+        for (Future<List<TriageResult>> part : rest) {
+            try {
+                results.addAll(part.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException cause ? cause
+                            : new IllegalStateException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                part.cancel(true);
+                if (failure == null) {
+                    failure = new IllegalStateException("Interrupted waiting for a triage batch", e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    // The caller did not ask for the trace, so it goes to the log and the response keeps its usual shape
+    private void logSampledTrace(Patient patient, TriageResult result, long version) {
+        sampledCounter.increment();
+        if (result.getFiredRules() != null) {
+            System.out.println("Sampled triage trace: patient " + patient.getId() + ", rules v" + version + ", "
+                    + result.getColor() + ", " + result.getRulesFired() + " rule(s) fired " + result.getFiredRules());
+        }
+        result.setRulesFired(null);
+        result.setFiredRules(null);
+    }
+
+    private boolean sampled() {
+        double rate = properties.getTrace().getSampleRate();
+        return rate > 0 && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    private void countResult(TriageResult result) {
+        resultCounters.computeIfAbsent(result.getTriageColor(), color -> Counter.builder("triage.results")
+                .description("Triage outcomes by colour")
+                .tag("color", color.getLabel())
+                .register(meterRegistry))
+                .increment();
+    }
+
+    // The current rules, kept open until the caller releases them
+    private LoadedRules acquire() {
+        while (true) {
+            LoadedRules current = rules.get();
+            if (current == null) {
+                throw new IllegalStateException("Triage Engine not initialized. Please generate rules.");
+            }
+            if (current.retain()) {
+                return current;
+            }
+            // Replaced and closed since we read it; its successor is already set
+        }
+    }
+
+    private SymptomCatalogue loadCatalogue() {
+        try {
+            return SymptomCatalogue.load(new File(ruleService.getDrlPath()));
+        } catch (IOException e) {
+            return SymptomCatalogue.EMPTY;
+        }
     }
 }
@@ -0,0 +1,64 @@
+package com.triage.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.triage.model.TriageColor;
+
+import java.time.Instant;
+
+/**
+ * A triaged patient waiting to be seen, as listed by {@code /api/waiting-room}.
+ * Immutable; a re-triage replaces it with a copy that keeps the arrival.
+ */
+@JsonPropertyOrder({ "patientId", "color", "priority", "arrivedAt", "triagedAt" })
+public class WaitingPatient {
+
+    private final String patientId;
+    private final TriageColor triageColor;
+    private final long arrival;
+    private final Instant arrivedAt;
+    private final Instant triagedAt;
+
+    WaitingPatient(String patientId, TriageColor triageColor, long arrival, Instant arrivedAt, Instant triagedAt) {
+        this.patientId = patientId;
+        this.triageColor = triageColor;
+        this.arrival = arrival;
+        this.arrivedAt = arrivedAt;
+        this.triagedAt = triagedAt;
+    }
+
+    WaitingPatient retriaged(TriageColor color) {
+        return new WaitingPatient(patientId, color, arrival, arrivedAt, Instant.now());
+    }
+
+    public String getPatientId() {
+        return patientId;
+    }
+
+    public String getColor() {
+        return triageColor.getLabel();
+    }
+
+    public int getPriority() {
+        return triageColor.getPriority();
+    }
+
+    public Instant getArrivedAt() {
+        return arrivedAt;
+    }
+
+    public Instant getTriagedAt() {
+        return triagedAt;
+    }
+
+    @JsonIgnore
+    public TriageColor getTriageColor() {
+        return triageColor;
+    }
+
+    /** Arrival order within the department; breaks ties between equal priorities. */
+    @JsonIgnore
+    long getArrival() {
+        return arrival;
+    }
+}
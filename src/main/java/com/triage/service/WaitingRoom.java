@@ -0,0 +1,204 @@
+package com.triage.service;
+
+import com.triage.model.TriageColor;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One department's queue, ordered by triage priority and then arrival.
+ * <p>
+ * Changes to one department are serialised on its own monitor and cost
+ * O(log n) in the skip list; departments never contend with each other, and
+ * reads walk the skip list without locking. Events are queued in change order
+ * while the monitor is held and sent from the executor afterwards, so a slow
+ * dashboard holds up neither the queue nor the request that changed it.
+ */
+final class WaitingRoom {
+
+    private static final Comparator<WaitingPatient> ORDER = Comparator
+            .comparingInt(WaitingPatient::getPriority)
+            .thenComparingLong(WaitingPatient::getArrival);
+
+    private final String department;
+    private final Executor dispatcher;
+    private final ConcurrentSkipListSet<WaitingPatient> queue = new ConcurrentSkipListSet<>(ORDER);
+    private final Map<String, WaitingPatient> byId = new ConcurrentHashMap<>();
+    private final Queue<Runnable> outbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean sending = new AtomicBoolean();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private long arrivals;
+    private long sequence;
+
+    WaitingRoom(String department, Executor dispatcher) {
+        this.department = department;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Add the patient, or re-triage them if they are already waiting.
+     */
+    WaitingPatient admit(String patientId, TriageColor color) {
+        WaitingPatient admitted;
+        synchronized (this) {
+            WaitingPatient waiting = byId.get(patientId);
+            if (waiting != null) {
+                admitted = replace(waiting, waiting.retriaged(color));
+            } else {
+                Instant now = Instant.now();
+                admitted = new WaitingPatient(patientId, color, arrivals++, now, now);
+                queue.add(admitted);
+                byId.put(patientId, admitted);
+                publish(WaitingRoomEvent.Type.ADMITTED, admitted);
+            }
+        }
+        flush();
+        return admitted;
+    }
+
+    /**
+     * Move a waiting patient to their new priority. Their original arrival
+     * still decides where they go among patients of that priority.
+     *
+     * @return null if the patient is not waiting here
+     */
+    WaitingPatient reprioritise(String patientId, TriageColor color) {
+        WaitingPatient updated;
+        synchronized (this) {
+            WaitingPatient waiting = byId.get(patientId);
+            if (waiting == null) {
+                return null;
+            }
+            updated = replace(waiting, waiting.retriaged(color));
+        }
+        flush();
+        return updated;
+    }
+
+    /**
+     * @return null if the patient is not waiting here
+     */
+    WaitingPatient discharge(String patientId) {
+        WaitingPatient discharged;
+        synchronized (this) {
+            discharged = byId.remove(patientId);
+            if (discharged == null) {
+                return null;
+            }
+            queue.remove(discharged);
+            publish(WaitingRoomEvent.Type.DISCHARGED, discharged);
+        }
+        flush();
+        return discharged;
+    }
+
+    WaitingPatient get(String patientId) {
+        return byId.get(patientId);
+    }
+
+    /**
+     * Most urgent first. Taken without locking, so it may straddle a change
+     * that is in progress.
+     */
+    List<WaitingPatient> list() {
+        return new ArrayList<>(queue);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Send {@code emitter} a "snapshot" event with the current list, then every
+     * change after it.
+     */
+    void subscribe(SseEmitter emitter) {
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        synchronized (this) {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("department", department);
+            snapshot.put("sequence", sequence);
+            snapshot.put("patients", list());
+            // Queued like a change, so it lands between the events before and after it
+            outbox.add(() -> {
+                if (send(emitter, "snapshot", snapshot)) {
+                    subscribers.add(emitter);
+                }
+            });
+        }
+        flush();
+    }
+
+    void close() {
+        for (SseEmitter emitter : subscribers) {
+            emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    // Caller holds the monitor
+    private WaitingPatient replace(WaitingPatient waiting, WaitingPatient updated) {
+        queue.remove(waiting);
+        queue.add(updated);
+        byId.put(updated.getPatientId(), updated);
+        publish(WaitingRoomEvent.Type.REPRIORITISED, updated);
+        return updated;
+    }
+
+    // Caller holds the monitor, so events enter the outbox in sequence order
+    private void publish(WaitingRoomEvent.Type type, WaitingPatient patient) {
+        WaitingRoomEvent event = new WaitingRoomEvent(type, ++sequence, patient, byId.size());
+        outbox.add(() -> {
+            for (SseEmitter emitter : subscribers) {
+                send(emitter, type.name().toLowerCase(), event);
+            }
+        });
+    }
+
+    private void flush() {
+        if (!outbox.isEmpty()) {
+            dispatcher.execute(this::drain);
+        }
+    }
+
+    // One sender at a time keeps events in order; a change queued while the
+    // sender is finishing up is picked up by the re-check
+    private void drain() {
+        while (!outbox.isEmpty() && sending.compareAndSet(false, true)) {
+            try {
+                Runnable next;
+                while ((next = outbox.poll()) != null) {
+                    next.run();
+                }
+            } finally {
+                sending.set(false);
+            }
+        }
+    }
+
+    private boolean send(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // Dashboard went away; Spring calls onError/onCompletion as well
+            subscribers.remove(emitter);
+            return false;
+        }
+    }
+}
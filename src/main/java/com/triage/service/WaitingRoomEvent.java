@@ -0,0 +1,44 @@
+package com.triage.service;
+
+/**
+ * One change to a department's queue, pushed to dashboards as an SSE event
+ * named after the type. {@code sequence} goes up by one per change, so a board
+ * can tell it missed one and reload the list.
+ */
+public class WaitingRoomEvent {
+
+    public enum Type {
+        ADMITTED,
+        REPRIORITISED,
+        DISCHARGED
+    }
+
+    private final Type type;
+    private final long sequence;
+    private final WaitingPatient patient;
+    private final int waiting;
+
+    WaitingRoomEvent(Type type, long sequence, WaitingPatient patient, int waiting) {
+        this.type = type;
+        this.sequence = sequence;
+        this.patient = patient;
+        this.waiting = waiting;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public WaitingPatient getPatient() {
+        return patient;
+    }
+
+    /** Patients waiting in the department after this change. */
+    public int getWaiting() {
+        return waiting;
+    }
+}
@@ -0,0 +1,115 @@
+package com.triage.service;
+
+import com.triage.model.TriageResult;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waiting-room queues per department, most urgent patient first. A department
+ * is created when its first patient is admitted, never by a read or a
+ * subscription, and departments are independent of each other.
+ */
+@Service
+public class WaitingRoomService {
+
+    private static final long SUBSCRIBER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    private final Map<String, WaitingRoom> rooms = new ConcurrentHashMap<>();
+    // Sends to dashboards; each room keeps its own events in order
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+    private final MeterRegistry meterRegistry;
+
+    public WaitingRoomService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Queue a triaged patient; a patient already waiting in the department is
+     * re-triaged in place instead.
+     */
+    public WaitingPatient admit(String department, String patientId, TriageResult result) {
+        return room(department).admit(patientId, result.getTriageColor());
+    }
+
+    /**
+     * @return null if the patient is not waiting in the department
+     */
+    public WaitingPatient reprioritise(String department, String patientId, TriageResult result) {
+        WaitingRoom room = rooms.get(department);
+        return room != null ? room.reprioritise(patientId, result.getTriageColor()) : null;
+    }
+
+    /**
+     * Take a patient off the queue once they have been seen or have left.
+     *
+     * @return null if the patient is not waiting in the department
+     */
+    public WaitingPatient discharge(String department, String patientId) {
+        WaitingRoom room = rooms.get(department);
+        return room != null ? room.discharge(patientId) : null;
+    }
+
+    public WaitingPatient getPatient(String department, String patientId) {
+        WaitingRoom room = rooms.get(department);
+        return room != null ? room.get(patientId) : null;
+    }
+
+    /**
+     * The department's queue, most urgent first.
+     */
+    public List<WaitingPatient> getPatients(String department) {
+        WaitingRoom room = rooms.get(department);
+        return room != null ? room.list() : Collections.emptyList();
+    }
+
+    /**
+     * Number of patients waiting per department.
+     */
+    public Map<String, Integer> getDepartments() {
+        Map<String, Integer> sizes = new TreeMap<>();
+        rooms.forEach((department, room) -> sizes.put(department, room.size()));
+        return sizes;
+    }
+
+    /**
+     * @return null if no patient has been admitted to the department yet
+     */
+    public SseEmitter subscribe(String department) {
+        WaitingRoom room = rooms.get(department);
+        if (room == null) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(SUBSCRIBER_TIMEOUT_MILLIS);
+        room.subscribe(emitter);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rooms.values().forEach(WaitingRoom::close);
+        dispatcher.shutdownNow();
+    }
+
+    private WaitingRoom room(String department) {
+        return rooms.computeIfAbsent(department, name -> {
+            WaitingRoom room = new WaitingRoom(name, dispatcher);
+            Gauge.builder("triage.waiting.patients", room, WaitingRoom::size)
+                    .description("Triaged patients waiting to be seen")
+                    .tag("department", name)
+                    .register(meterRegistry);
+            return room;
+        });
+    }
+}
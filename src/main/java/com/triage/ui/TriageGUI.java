@@ -3,31 +3,47 @@ package com.triage.ui;
 import com.triage.model.Patient;
 import com.triage.model.Symptom;
 import com.triage.model.TriageResult;
+import com.triage.service.RuleGenerationJob;
+import com.triage.service.RuleGenerationJobService;
 import com.triage.service.RuleGenerationService;
+import com.triage.service.TriageJournalService;
+import com.triage.service.TriageOverloadedException;
 import com.triage.service.TriageService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 @Component
+@Lazy // Only built when main() shows it, so headless start-up never touches Swing
+@ConditionalOnProperty(name = "triage.gui.enabled", havingValue = "true", matchIfMissing = true)
 public class TriageGUI extends JFrame {
 
     private final TriageService triageService;
     private final RuleGenerationService ruleGenerationService;
+    private final RuleGenerationJobService jobService;
+    private final TriageJournalService journal;
 
     private JComboBox<String> symptomDropdown;
     private DefaultListModel<String> selectedSymptomsModel;
     private JTextField ageField;
     private JTextArea resultArea;
+    private JButton triageButton;
     private JLabel statusLabel;
+    // Last triage shown, for Save Output
+    private Patient lastPatient;
+    private TriageResult lastResult;
 
-    public TriageGUI(TriageService triageService, RuleGenerationService ruleGenerationService) {
+    public TriageGUI(TriageService triageService, RuleGenerationService ruleGenerationService,
+            RuleGenerationJobService jobService, TriageJournalService journal) {
         this.triageService = triageService;
         this.ruleGenerationService = ruleGenerationService;
+        this.jobService = jobService;
+        this.journal = journal;
 
         setTitle("Irish Children's Triage System");
         setSize(800, 600);
@@ -72,38 +88,34 @@ public class TriageGUI extends JFrame {
         statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
         generateButton.addActionListener(e -> {
-            try {
-                statusLabel.setText("Status: Generating rules...");
-                // Run in background to not freeze UI
-                SwingWorker<Void, Void> worker = new SwingWorker<>() {
-                    @Override
-                    protected Void doInBackground() throws Exception {
-                        ruleGenerationService.generateRules();
-                        triageService.init(); // Re-initialize engine
-                        return null;
+            statusLabel.setText("Status: Generating rules...");
+
+            // Same background job as POST /api/rules/generate; joins it if one is running
+            RuleGenerationJob job = jobService.start();
+            Timer progress = new Timer(250, null);
+            progress.addActionListener(tick -> {
+                if (!job.isFinished()) {
+                    if (job.getState() == RuleGenerationJob.State.READING_PDF && job.getPagesTotal() > 0) {
+                        statusLabel.setText("Status: Generating rules... page " + job.getPagesRead() + " of "
+                                + job.getPagesTotal());
                     }
-
-                    @Override
-                    protected void done() {
-                        try {
-                            get();
-                            statusLabel.setText("Status: Rules Generated Successfully.");
-                            JOptionPane.showMessageDialog(TriageGUI.this, "Rules generated successfully!", "Success",
-                                    JOptionPane.INFORMATION_MESSAGE);
-                            refreshSymptoms();
-                        } catch (Exception ex) {
-                            statusLabel.setText("Status: Error generating rules.");
-                            JOptionPane.showMessageDialog(TriageGUI.this, "Error: " + ex.getMessage(), "Error",
-                                    JOptionPane.ERROR_MESSAGE);
-                            ex.printStackTrace();
-                        }
-                    }
-                };
-                worker.execute();
-
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+                    return;
+                }
+                progress.stop();
+                if (job.getState() == RuleGenerationJob.State.SUCCEEDED) {
+                    statusLabel.setText("Status: Rules Generated Successfully.");
+                    JOptionPane.showMessageDialog(TriageGUI.this, "Rules generated successfully!", "Success",
+                            JOptionPane.INFORMATION_MESSAGE);
+                    refreshSymptoms();
+                } else {
+                    statusLabel.setText("Status: Error generating rules.");
+                    String message = job.getState() == RuleGenerationJob.State.CANCELLED ? "Generation was cancelled"
+                            : job.getError();
+                    JOptionPane.showMessageDialog(TriageGUI.this, "Error: " + message, "Error",
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            });
+            progress.start();
         });
 
         GridBagConstraints gbc = new GridBagConstraints();
@@ -163,9 +175,11 @@ public class TriageGUI extends JFrame {
             ageField.setText("");
             resultArea.setText("");
             resultArea.setBackground(Color.WHITE);
+            lastPatient = null;
+            lastResult = null;
         });
 
-        JButton triageButton = new JButton("Triage Patient");
+        triageButton = new JButton("Triage Patient");
         triageButton.setFont(new Font("Arial", Font.BOLD, 14));
         triageButton.addActionListener(e -> performTriage());
 
@@ -218,59 +232,90 @@ public class TriageGUI extends JFrame {
                 patient.addSymptom(new Symptom(selectedSymptomsModel.get(i)));
             }
 
-            TriageResult result = triageService.triage(patient);
-
-            resultArea.setText(result.toString());
-
-            // Color coding
-            String color = result.getColor();
-            if (color != null) {
-                switch (color.toLowerCase()) {
-                    case "red":
-                        resultArea.setBackground(Color.RED);
-                        break;
-                    case "orange":
-                        resultArea.setBackground(Color.ORANGE);
-                        break;
-                    case "yellow":
-                        resultArea.setBackground(Color.YELLOW);
-                        break;
-                    case "green":
-                        resultArea.setBackground(Color.GREEN);
-                        break;
-                    case "blue":
-                        resultArea.setBackground(Color.CYAN);
-                        break;
-                    default:
-                        resultArea.setBackground(Color.WHITE);
+            // Off the event thread: the call may wait for an admission slot
+            triageButton.setEnabled(false);
+            new SwingWorker<TriageResult, Void>() {
+                @Override
+                protected TriageResult doInBackground() {
+                    return triageService.triage(patient);
                 }
-            }
+
+                @Override
+                protected void done() {
+                    triageButton.setEnabled(true);
+                    try {
+                        showResult(patient, get());
+                    } catch (ExecutionException e) {
+                        showTriageError(e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }.execute();
 
         } catch (NumberFormatException e) {
             JOptionPane.showMessageDialog(this, "Invalid Age. Must be a number.", "Error", JOptionPane.ERROR_MESSAGE);
         } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Triage Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            e.printStackTrace();
+            showTriageError(e);
         }
     }
 
+    private void showResult(Patient patient, TriageResult result) {
+        lastPatient = patient;
+        lastResult = result;
+
+        resultArea.setText(result.toString());
+
+        // Color coding
+        switch (result.getTriageColor()) {
+            case RED:
+                resultArea.setBackground(Color.RED);
+                break;
+            case ORANGE:
+                resultArea.setBackground(Color.ORANGE);
+                break;
+            case YELLOW:
+                resultArea.setBackground(Color.YELLOW);
+                break;
+            case GREEN:
+                resultArea.setBackground(Color.GREEN);
+                break;
+            case BLUE:
+                resultArea.setBackground(Color.CYAN);
+                break;
+            default:
+                resultArea.setBackground(Color.WHITE);
+        }
+    }
+
+    private void showTriageError(Throwable e) {
+        if (e instanceof TriageOverloadedException overloaded) {
+            JOptionPane.showMessageDialog(this, "The triage engine is busy: " + overloaded.getMessage()
+                    + ". Try again in " + overloaded.getRetryAfterSeconds() + " s.", "Busy",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        JOptionPane.showMessageDialog(this, "Triage Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        e.printStackTrace();
+    }
+
     private void saveOutput() {
-        String result = resultArea.getText();
-        if (result == null || result.isEmpty()) {
+        if (lastResult == null) {
             JOptionPane.showMessageDialog(this, "No result to save.", "Info", JOptionPane.INFORMATION_MESSAGE);
             return;
         }
+        if (!journal.isEnabled()) {
+            JOptionPane.showMessageDialog(this, "The triage journal is disabled (triage.journal.enabled).", "Info",
+                    JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
 
-        try (FileWriter fw = new FileWriter("triage_result.txt", true)) {
-            fw.write("Date: " + java.time.LocalDateTime.now() + "\n");
-            fw.write("Patient Age: " + ageField.getText() + "\n");
-            fw.write("Symptoms: " + selectedSymptomsModel.toString() + "\n");
-            fw.write("Result: " + result + "\n");
-            fw.write("--------------------------------------------------\n");
-            JOptionPane.showMessageDialog(this, "Saved to triage_result.txt", "Success",
+        // Queued for the journal's writer thread, so the event thread never waits for the disk
+        if (journal.record(TriageJournalService.SOURCE_GUI, lastPatient, lastResult)) {
+            JOptionPane.showMessageDialog(this, "Saved to the triage journal", "Success",
                     JOptionPane.INFORMATION_MESSAGE);
-        } catch (IOException e) {
-            JOptionPane.showMessageDialog(this, "Failed to save: " + e.getMessage(), "Error",
+        } else {
+            JOptionPane.showMessageDialog(this, "Failed to save: the triage journal is not keeping up", "Error",
                     JOptionPane.ERROR_MESSAGE);
         }
     }
@@ -0,0 +1,78 @@
+package com.triage.controller;
+
+import com.triage.config.TriageProperties;
+import com.triage.model.Patient;
+import com.triage.model.TriageResult;
+import com.triage.service.TriageJournalService;
+import com.triage.service.TriageOverloadedException;
+import com.triage.service.TriageService;
+import com.triage.service.WaitingRoomService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * An overloaded triage engine answers 503 with a Retry-After on every endpoint
+ * that triages, and nothing is queued for it.
+ */
+public class TriageControllerTest {
+
+    private final TriageProperties properties = new TriageProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void overloadedTriageIsRetriedLater() {
+        TriageController controller = new TriageController(overloaded(), journal());
+
+        assertRetryAfter(controller.triagePatient(new Patient("A", 5), false));
+        assertRetryAfter(controller.triagePatients(List.of(new Patient("A", 5))));
+    }
+
+    @Test
+    public void overloadedAdmissionIsRetriedLater() {
+        WaitingRoomService waitingRoom = new WaitingRoomService(meterRegistry);
+        try {
+            WaitingRoomController controller = new WaitingRoomController(overloaded(), waitingRoom, journal());
+
+            assertRetryAfter(controller.admit("ed", new Patient("A", 5)));
+            Assertions.assertTrue(waitingRoom.getDepartments().isEmpty());
+        } finally {
+            waitingRoom.shutdown();
+        }
+    }
+
+    private static void assertRetryAfter(ResponseEntity<?> response) {
+        Assertions.assertEquals(503, response.getStatusCode().value());
+        Assertions.assertEquals("7", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals("Triage queue full (0 waiting)", response.getBody());
+    }
+
+    // Loaded, but every call turned away by the admission limiter
+    private TriageService overloaded() {
+        return new TriageService(null, properties, meterRegistry) {
+            @Override
+            public boolean isInitialized() {
+                return true;
+            }
+
+            @Override
+            public TriageResult triage(Patient patient, boolean explain) {
+                throw new TriageOverloadedException("Triage queue full (0 waiting)", 7);
+            }
+
+            @Override
+            public List<TriageResult> triageBatch(List<Patient> patients) {
+                throw new TriageOverloadedException("Triage queue full (0 waiting)", 7);
+            }
+        };
+    }
+
+    private TriageJournalService journal() {
+        properties.getJournal().setEnabled(false);
+        return new TriageJournalService(properties, meterRegistry);
+    }
+}
@@ -0,0 +1,117 @@
+package com.triage.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load against a running triage server: arrivals follow a Poisson
+ * process at a fixed rate whether or not earlier requests have returned, the
+ * way patients keep arriving at a busy ED. Latency is measured from each
+ * request's scheduled arrival, so a stalled server shows up in the tail
+ * instead of silently slowing the generator down.
+ */
+public class LoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String baseUrl;
+    private final PatientMix patients;
+    private final double symptomsShare;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Random random = new Random(1);
+
+    /**
+     * @param symptomsShare fraction of arrivals that fetch /api/symptoms instead of triaging
+     */
+    public LoadGenerator(String baseUrl, PatientMix patients, double symptomsShare) {
+        this.baseUrl = baseUrl;
+        this.patients = patients;
+        this.symptomsShare = symptomsShare;
+    }
+
+    /**
+     * Drive {@code ratePerSecond} arrivals for {@code duration}, discarding the
+     * first {@code warmup} of it, and wait for the stragglers.
+     */
+    public LoadReport run(double ratePerSecond, Duration warmup, Duration duration) throws InterruptedException {
+        LoadReport.Endpoint triage = new LoadReport.Endpoint("POST /api/triage");
+        LoadReport.Endpoint symptoms = new LoadReport.Endpoint("GET /api/symptoms");
+        Recorder triageLatency = new Recorder(MAX_LATENCY_NANOS, 3);
+        Recorder symptomsLatency = new Recorder(MAX_LATENCY_NANOS, 3);
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmup.toNanos();
+        long end = measureFrom + duration.toNanos();
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+
+        try (ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor()) {
+            long arrival = start;
+            while (arrival < end) {
+                // Exponential gaps give Poisson arrivals
+                arrival += (long) (-Math.log(1 - random.nextDouble()) * meanGapNanos);
+                long wait = arrival - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                long scheduled = arrival;
+                boolean measured = scheduled >= measureFrom;
+                if (random.nextDouble() < symptomsShare) {
+                    requests.execute(() -> send(symptomsRequest(), scheduled, measured, symptoms, symptomsLatency));
+                } else {
+                    HttpRequest request = triageRequest();
+                    requests.execute(() -> send(request, scheduled, measured, triage, triageLatency));
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - measureFrom;
+
+        triage.setLatency(triageLatency.getIntervalHistogram());
+        symptoms.setLatency(symptomsLatency.getIntervalHistogram());
+        return new LoadReport(ratePerSecond, elapsed, triage, symptoms);
+    }
+
+    private void send(HttpRequest request, long scheduled, boolean measured, LoadReport.Endpoint endpoint,
+            Recorder latency) {
+        int status;
+        try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            status = -1;
+        }
+        if (measured) {
+            latency.recordValue(Math.min(System.nanoTime() - scheduled, MAX_LATENCY_NANOS));
+            endpoint.count(status);
+        }
+    }
+
+    private HttpRequest triageRequest() {
+        try {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/triage"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(patients.next())))
+                    .build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialise patient", e);
+        }
+    }
+
+    private HttpRequest symptomsRequest() {
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/api/symptoms"))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.triage.load;
+
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of one {@link LoadGenerator} stage: throughput, latency percentiles
+ * and error rates per endpoint, over the measured part of the run.
+ */
+public class LoadReport {
+
+    public static class Endpoint {
+        private final String name;
+        private final LongAdder ok = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private Histogram latency;
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+
+        void count(int status) {
+            if (status >= 200 && status < 400) {
+                ok.increment();
+            } else if (status == 503) {
+                rejected.increment(); // Admission control turned it away
+            } else {
+                errors.increment();
+            }
+        }
+
+        void setLatency(Histogram latency) {
+            this.latency = latency;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getRequests() {
+            return ok.sum() + rejected.sum() + errors.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Share of requests that were rejected or failed.
+         */
+        public double getFailureRate() {
+            long requests = getRequests();
+            return requests == 0 ? 0 : (double) (rejected.sum() + errors.sum()) / requests;
+        }
+
+        public double getPercentileMillis(double percentile) {
+            return latency.getValueAtPercentile(percentile) / 1e6;
+        }
+    }
+
+    private final double targetRate;
+    private final long elapsedNanos;
+    private final Endpoint triage;
+    private final Endpoint symptoms;
+
+    LoadReport(double targetRate, long elapsedNanos, Endpoint triage, Endpoint symptoms) {
+        this.targetRate = targetRate;
+        this.elapsedNanos = elapsedNanos;
+        this.triage = triage;
+        this.symptoms = symptoms;
+    }
+
+    public double getTargetRate() {
+        return targetRate;
+    }
+
+    public Endpoint getTriage() {
+        return triage;
+    }
+
+    public Endpoint getSymptoms() {
+        return symptoms;
+    }
+
+    /**
+     * Requests completed per second across both endpoints.
+     */
+    public double getThroughput() {
+        return (triage.getRequests() + symptoms.getRequests()) / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * True if at most {@code maxFailureRate} of triage requests failed and their
+     * p99 stayed within {@code p99Millis}.
+     */
+    public boolean isSustainable(double maxFailureRate, double p99Millis) {
+        return triage.getRequests() > 0 && triage.getFailureRate() <= maxFailureRate
+                && triage.getPercentileMillis(99) <= p99Millis;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Target %.0f req/s, achieved %.1f req/s%n", targetRate, getThroughput()));
+        out.append(String.format("  %-18s %8s %8s %7s %8s %8s %8s %8s %8s%n",
+                "endpoint", "requests", "rejected", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Endpoint endpoint : new Endpoint[] { triage, symptoms }) {
+            if (endpoint.getRequests() == 0) {
+                continue;
+            }
+            out.append(String.format("  %-18s %8d %8d %7d %8.2f %8.2f %8.2f %8.2f %8.2f%n", endpoint.getName(),
+                    endpoint.getRequests(), endpoint.getRejected(), endpoint.getErrors(),
+                    endpoint.getPercentileMillis(50), endpoint.getPercentileMillis(90),
+                    endpoint.getPercentileMillis(99), endpoint.getPercentileMillis(99.9),
+                    endpoint.latency.getMaxValue() / 1e6));
+        }
+        return out.toString();
+    }
+}
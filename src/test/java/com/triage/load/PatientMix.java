@@ -0,0 +1,91 @@
+package com.triage.load;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageColor;
+import com.triage.rules.SymptomCatalogue;
+import com.triage.rules.SymptomIndex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthesises ED arrivals from the symptoms in a generated DRL. Most children
+ * present with one or two discriminators and land in Yellow or Green; Red is
+ * rare. Each patient is built to come out at a colour drawn from that mix:
+ * one symptom of the target colour plus extra symptoms that are never more
+ * urgent.
+ */
+public class PatientMix {
+
+    // Share of arrivals per colour, roughly an ED's acuity mix
+    private static final double[] COLOR_WEIGHTS = { 0.01, 0.10, 0.35, 0.45, 0.09 };
+    // Share of arrivals with 1, 2, 3, 4 and 5 symptoms
+    private static final double[] SYMPTOM_COUNT_WEIGHTS = { 0.45, 0.25, 0.15, 0.08, 0.07 };
+
+    private final Map<TriageColor, List<String>> symptomsByColor = new EnumMap<>(TriageColor.class);
+    private final Random random;
+    private int next;
+
+    public PatientMix(File drlFile, long seed) throws IOException {
+        SymptomIndex index = SymptomIndex.compile(drlFile);
+        for (TriageColor color : TriageColor.values()) {
+            symptomsByColor.put(color, new ArrayList<>());
+        }
+        for (String symptom : SymptomCatalogue.load(drlFile).getSymptoms()) {
+            Patient probe = new Patient("probe", 5);
+            probe.addSymptom(new Symptom(symptom));
+            symptomsByColor.get(index.lookup(probe).getTriageColor()).add(symptom);
+        }
+        this.random = new Random(seed);
+    }
+
+    public synchronized Patient next() {
+        TriageColor target = pickColor();
+        Patient patient = new Patient("LOAD_" + (next++), random.nextInt(16));
+        List<String> primary = symptomsByColor.get(target);
+        patient.addSymptom(new Symptom(primary.get(random.nextInt(primary.size()))));
+
+        int extra = pick(SYMPTOM_COUNT_WEIGHTS);
+        for (int i = 0; i < extra; i++) {
+            // Never more urgent than the target, so the target colour still wins
+            TriageColor color = TriageColor.values()[target.ordinal()
+                    + random.nextInt(TriageColor.values().length - target.ordinal())];
+            List<String> candidates = symptomsByColor.get(color);
+            if (!candidates.isEmpty()) {
+                patient.addSymptom(new Symptom(candidates.get(random.nextInt(candidates.size()))));
+            }
+        }
+        return patient;
+    }
+
+    public int getSymptomCount(TriageColor color) {
+        return symptomsByColor.get(color).size();
+    }
+
+    // A weighted colour that has at least one symptom
+    private TriageColor pickColor() {
+        while (true) {
+            TriageColor color = TriageColor.values()[pick(COLOR_WEIGHTS)];
+            if (!symptomsByColor.get(color).isEmpty()) {
+                return color;
+            }
+        }
+    }
+
+    private int pick(double[] weights) {
+        double r = random.nextDouble();
+        for (int i = 0; i < weights.length - 1; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+}
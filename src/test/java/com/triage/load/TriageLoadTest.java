@@ -0,0 +1,101 @@
+package com.triage.load;
+
+import com.triage.TriageApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Steps the arrival rate up against an embedded server (GUI off) and reports
+ * the highest rate each node sustains. Only runs when asked for:
+ * <pre>
+ * mvn verify -Dit.test=TriageLoadTest -Dloadtest=true -Dloadtest.rates=100,200,400,800
+ * </pre>
+ * Set {@code loadtest.url} to drive an already running server instead.
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+public class TriageLoadTest {
+
+    private static final String DRL_PATH = "generated_rules/triage.drl";
+
+    private static ConfigurableApplicationContext context;
+    private static String baseUrl;
+
+    @BeforeAll
+    public static void startServer() throws Exception {
+        baseUrl = System.getProperty("loadtest.url");
+        if (baseUrl == null) {
+            context = new SpringApplicationBuilder(TriageApplication.class)
+                    .headless(true)
+                    .properties("server.port=0", "triage.gui.enabled=false")
+                    .run();
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        awaitRules(Duration.ofMinutes(2));
+    }
+
+    @AfterAll
+    public static void stopServer() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void reportSustainableRate() throws Exception {
+        File drl = new File(DRL_PATH);
+        Assertions.assertTrue(drl.exists(), "No rules at " + DRL_PATH);
+        PatientMix patients = new PatientMix(drl, Long.getLong("loadtest.seed", 42L));
+        LoadGenerator generator = new LoadGenerator(baseUrl, patients,
+                Double.parseDouble(System.getProperty("loadtest.symptoms-share", "0.1")));
+
+        Duration warmup = Duration.ofSeconds(Long.getLong("loadtest.warmup-seconds", 5L));
+        Duration duration = Duration.ofSeconds(Long.getLong("loadtest.duration-seconds", 30L));
+        double maxFailureRate = Double.parseDouble(System.getProperty("loadtest.max-failure-rate", "0.01"));
+        double p99Millis = Double.parseDouble(System.getProperty("loadtest.p99-millis", "250"));
+
+        List<LoadReport> reports = new ArrayList<>();
+        double sustainable = 0;
+        for (String rate : System.getProperty("loadtest.rates", "50,100,200,400").split(",")) {
+            LoadReport report = generator.run(Double.parseDouble(rate.trim()), warmup, duration);
+            reports.add(report);
+            System.out.println(report);
+            if (!report.isSustainable(maxFailureRate, p99Millis)) {
+                break; // Higher rates will only be worse
+            }
+            sustainable = report.getTargetRate();
+        }
+
+        System.out.printf("Sustainable: %.0f req/s (triage failures <= %.1f%%, p99 <= %.0f ms)%n",
+                sustainable, maxFailureRate * 100, p99Millis);
+        Assertions.assertFalse(reports.isEmpty(), "No load stages configured");
+    }
+
+    // Rules load in the background after start-up; wait until triage answers
+    private static void awaitRules(Duration timeout) throws Exception {
+        HttpClient client = HttpClient.newHttpClient();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> status = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/rules")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (status.body().contains("\"initialized\":true")) {
+                return;
+            }
+            Thread.sleep(500);
+        }
+        Assertions.fail("Rules not loaded within " + timeout);
+    }
+}
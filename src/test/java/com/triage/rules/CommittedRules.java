@@ -0,0 +1,85 @@
+package com.triage.rules;
+
+import com.triage.model.TriageColor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The committed per-symptom DRL read back into flowchart segments, so tests can
+ * write the same rules in the other layouts without the source PDF.
+ */
+final class CommittedRules {
+
+    static final File DRL = new File("generated_rules/triage.drl");
+
+    private static final Pattern RULE_HEADER = Pattern.compile("^rule \"Rule_\\d+_(.*)\"$");
+    private static final Pattern SYMPTOM_MATCH = Pattern
+            .compile("^Symptom\\( name == \"((?:[^\"\\\\]|\\\\.)*)\" \\) from \\$s$");
+    private static final Pattern RESULT_INSERT = Pattern.compile("^insert\\(new TriageResult\\(\"(\\w+)\"\\)\\);$");
+
+    private CommittedRules() {
+    }
+
+    /**
+     * One segment per run of rules with the same flowchart title, in file order.
+     */
+    static List<RuleManifest.Segment> segments() throws IOException {
+        List<RuleManifest.Segment> segments = new ArrayList<>();
+        RuleManifest.Segment current = null;
+        String title = null;
+        String symptom = null;
+        for (String raw : Files.readAllLines(DRL.toPath(), StandardCharsets.UTF_8)) {
+            String line = raw.trim();
+            Matcher header = RULE_HEADER.matcher(line);
+            Matcher match = SYMPTOM_MATCH.matcher(line);
+            Matcher insert = RESULT_INSERT.matcher(line);
+            if (header.matches()) {
+                title = header.group(1).replace("\\\"", "\"");
+            } else if (match.matches()) {
+                symptom = match.group(1).replace("\\\"", "\"");
+            } else if (insert.matches()) {
+                if (current == null || !current.getTitle().equals(title)) {
+                    current = new RuleManifest.Segment(title, segments.size() + 1, 0);
+                    segments.add(current);
+                }
+                int category = TriageColor.of(insert.group(1)).getPriority();
+                current.getRules().add(new RuleManifest.Rule(symptom, category));
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * The committed rules written to {@code directory} in the given layout.
+     */
+    static File write(Path directory, DrlLayout layout, boolean prioritized, boolean flowchartScoped)
+            throws IOException {
+        TriageRuleGenerator generator = new TriageRuleGenerator();
+        generator.setLayout(layout);
+        generator.setPrioritized(prioritized);
+        generator.setFlowchartScoped(flowchartScoped);
+        File drl = directory.resolve(layout.name().toLowerCase(Locale.ROOT) + (prioritized ? "-prioritized" : "")
+                + (flowchartScoped ? "-scoped" : "") + ".drl").toFile();
+        generator.writeRules(drl.getPath(), segments());
+        return drl;
+    }
+
+    static List<String> flowcharts() throws IOException {
+        List<String> titles = new ArrayList<>();
+        for (RuleManifest.Segment segment : segments()) {
+            if (!titles.contains(segment.getTitle())) {
+                titles.add(segment.getTitle());
+            }
+        }
+        return titles;
+    }
+}
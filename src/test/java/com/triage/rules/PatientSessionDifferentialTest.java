@@ -0,0 +1,107 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Re-triages the same patients over and over with symptoms added, removed and
+ * repeated and the presenting flowchart changing, and requires the per-patient
+ * sessions to give the colour a fresh session gives at every step.
+ */
+public class PatientSessionDifferentialTest {
+
+    private static final int PATIENTS = 20;
+    private static final int STEPS = 3000;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    public void committedRules() {
+        Assumptions.assumeTrue(CommittedRules.DRL.exists(), "No committed rules at " + CommittedRules.DRL);
+    }
+
+    @Test
+    public void groupedRules() throws IOException {
+        assertSameColours(CommittedRules.write(tempDir, DrlLayout.GROUPED, false, false), 1L);
+    }
+
+    @Test
+    public void prioritizedRules() throws IOException {
+        assertSameColours(CommittedRules.write(tempDir, DrlLayout.GROUPED, true, false), 2L);
+    }
+
+    @Test
+    public void flowchartScopedRules() throws IOException {
+        assertSameColours(CommittedRules.write(tempDir, DrlLayout.GROUPED, false, true), 3L);
+    }
+
+    @Test
+    public void prioritizedFlowchartScopedRules() throws IOException {
+        assertSameColours(CommittedRules.write(tempDir, DrlLayout.GROUPED, true, true), 4L);
+    }
+
+    private void assertSameColours(File drl, long seed) throws IOException {
+        TriageEngine perPatient = engine(drl, SessionStrategy.PER_PATIENT);
+        TriageEngine perRequest = engine(drl, SessionStrategy.PER_REQUEST);
+        List<String> symptoms = new ArrayList<>(SymptomCatalogue.load(drl).getSymptoms());
+        List<String> flowcharts = CommittedRules.flowcharts();
+
+        Random random = new Random(seed);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < PATIENTS; i++) {
+            patients.add(new Patient("P" + i, random.nextInt(16)));
+        }
+        try {
+            for (int step = 0; step < STEPS; step++) {
+                Patient patient = patients.get(random.nextInt(PATIENTS));
+                change(random, patient, symptoms, flowcharts);
+                Assertions.assertEquals(perRequest.executeTriage(patient).getColor(),
+                        perPatient.executeTriage(patient).getColor(),
+                        "Step " + step + ": colour differs for " + patient.getId() + " with "
+                                + patient.getSymptoms() + " presenting with " + patient.getPresentingFlowchart());
+            }
+        } finally {
+            perPatient.close();
+        }
+    }
+
+    // Mostly adds and removes; now and then a repeat of a symptom already listed
+    // or a different (or no) presenting flowchart
+    private static void change(Random random, Patient patient, List<String> symptoms, List<String> flowcharts) {
+        List<Symptom> current = patient.getSymptoms();
+        int action = random.nextInt(10);
+        if (action < 4 || current.isEmpty()) {
+            current.add(new Symptom(symptoms.get(random.nextInt(symptoms.size()))));
+        } else if (action < 7) {
+            current.remove(random.nextInt(current.size()));
+        } else if (action < 8) {
+            current.add(new Symptom(current.get(random.nextInt(current.size())).getName()));
+        } else if (action < 9) {
+            patient.setPresentingFlowchart(random.nextBoolean()
+                    ? flowcharts.get(random.nextInt(flowcharts.size())) : null);
+        }
+        // Otherwise re-triaged unchanged
+    }
+
+    private static TriageEngine engine(File drl, SessionStrategy strategy) {
+        TriageEngine engine = new TriageEngine();
+        engine.setDrlPath(drl.getPath());
+        engine.setUsePrecompiled(false);
+        engine.setSessionStrategy(strategy);
+        engine.init();
+        return engine;
+    }
+}
@@ -0,0 +1,174 @@
+package com.triage.rules;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageColor;
+import com.triage.model.TriageResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the Drools engine and the evaluators that answer without it (the bitset
+ * evaluator and the symptom index) over the same generated patients and
+ * requires the same colour for every one of them.
+ */
+public class TriageEvaluatorDifferentialTest {
+
+    private static final int PATIENTS = 2000;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void committedRulesGiveTheSameColours() throws IOException {
+        File drl = CommittedRules.DRL;
+        Assumptions.assumeTrue(drl.exists(), "No committed rules at " + drl);
+
+        assertSameColours(drl, bitset(drl), List.of(), 42L);
+    }
+
+    @Test
+    public void symptomIndexGivesTheSameColours() throws IOException {
+        File drl = CommittedRules.DRL;
+        Assumptions.assumeTrue(drl.exists(), "No committed rules at " + drl);
+        Assertions.assertTrue(SymptomIndex.compile(drl).isComplete(), "Committed rules not fully indexed");
+
+        assertSameColours(drl, engine(drl, EngineMode.INDEXED), List.of(), 11L);
+    }
+
+    @Test
+    public void ruleTheIndexCannotModelFallsBackToDrools() throws IOException {
+        Assumptions.assumeTrue(CommittedRules.DRL.exists(), "No committed rules at " + CommittedRules.DRL);
+        // Two symptoms that are Blue on their own but Red together: a conjunction no map can hold
+        List<String> blue = new ArrayList<>();
+        SymptomIndex.compile(CommittedRules.DRL).colorsBySymptom().forEach((symptom, color) -> {
+            if (color == TriageColor.BLUE) {
+                blue.add(symptom);
+            }
+        });
+        Collections.sort(blue);
+        Assumptions.assumeTrue(blue.size() >= 2, "Not enough Blue symptoms to combine");
+        File drl = tempDir.resolve("conjunction.drl").toFile();
+        Files.writeString(drl.toPath(), Files.readString(CommittedRules.DRL.toPath())
+                + "rule \"Both\"\n"
+                + "    when\n"
+                + "        $p : Patient( $s : symptoms )\n"
+                + "        Symptom( name == \"" + blue.get(0) + "\" ) from $s\n"
+                + "        Symptom( name == \"" + blue.get(1) + "\" ) from $s\n"
+                + "    then\n"
+                + "        insert(new TriageResult(\"Red\"));\n"
+                + "end\n");
+        Assertions.assertFalse(SymptomIndex.compile(drl).isComplete(), "Conjunction was indexed");
+
+        TriageEngine indexed = engine(drl, EngineMode.INDEXED);
+        Patient both = new Patient("P1", 8);
+        both.addSymptom(new Symptom(blue.get(0)));
+        both.addSymptom(new Symptom(blue.get(1)));
+        Assertions.assertEquals(TriageColor.RED, indexed.executeTriage(both).getTriageColor());
+        assertSameColours(drl, indexed, List.of(), 13L);
+    }
+
+    @Test
+    public void committedRulesReadBackWriteTheSameDrl() throws IOException {
+        Assumptions.assumeTrue(CommittedRules.DRL.exists(), "No committed rules at " + CommittedRules.DRL);
+        File drl = CommittedRules.write(tempDir, DrlLayout.PER_SYMPTOM, false, false);
+
+        Assertions.assertEquals(Files.readString(CommittedRules.DRL.toPath()), Files.readString(drl.toPath()));
+    }
+
+    @Test
+    public void prioritizedFlowchartScopedRulesGiveTheSameColours() throws IOException {
+        Assumptions.assumeTrue(CommittedRules.DRL.exists(), "No committed rules at " + CommittedRules.DRL);
+        File drl = CommittedRules.write(tempDir, DrlLayout.GROUPED, true, true);
+
+        assertSameColours(drl, bitset(drl), CommittedRules.flowcharts(), 7L);
+    }
+
+    @Test
+    public void firstMatchGivesTheMostUrgentColour() throws IOException {
+        Assumptions.assumeTrue(CommittedRules.DRL.exists(), "No committed rules at " + CommittedRules.DRL);
+        TriageEngine allRules = engine(CommittedRules.DRL, EngineMode.DROOLS);
+        List<String> symptoms = symptoms(CommittedRules.DRL);
+
+        for (DrlLayout layout : DrlLayout.values()) {
+            File drl = CommittedRules.write(tempDir, layout, true, false);
+            for (SessionStrategy strategy : List.of(SessionStrategy.PER_REQUEST, SessionStrategy.STATELESS)) {
+                TriageEngine firstMatch = engine(drl, EngineMode.DROOLS, strategy);
+                Assertions.assertTrue(firstMatch.isPrioritized(), layout + " rules not prioritized");
+                assertSameColours(allRules, firstMatch, symptoms, List.of(), 17L);
+            }
+        }
+    }
+
+    private void assertSameColours(File drl, TriageEvaluator evaluator, List<String> flowcharts, long seed)
+            throws IOException {
+        assertSameColours(engine(drl, EngineMode.DROOLS), evaluator, symptoms(drl), flowcharts, seed);
+    }
+
+    private void assertSameColours(TriageEvaluator drools, TriageEvaluator evaluator, List<String> symptoms,
+            List<String> flowcharts, long seed) {
+        Random random = new Random(seed);
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = randomPatient(random, "P" + i, symptoms, flowcharts);
+            TriageResult expected = drools.executeTriage(patient);
+            TriageResult actual = evaluator.executeTriage(patient);
+            Assertions.assertEquals(expected.getColor(), actual.getColor(),
+                    "Colour differs for " + patient.getSymptoms() + " presenting with "
+                            + patient.getPresentingFlowchart());
+        }
+    }
+
+    private static TriageEngine engine(File drl, EngineMode mode) {
+        return engine(drl, mode, SessionStrategy.PER_REQUEST);
+    }
+
+    private static TriageEngine engine(File drl, EngineMode mode, SessionStrategy strategy) {
+        TriageEngine engine = new TriageEngine();
+        engine.setDrlPath(drl.getPath());
+        engine.setUsePrecompiled(false);
+        engine.setMode(mode);
+        engine.setSessionStrategy(strategy);
+        engine.init();
+        return engine;
+    }
+
+    private static List<String> symptoms(File drl) throws IOException {
+        List<String> symptoms = new ArrayList<>(SymptomCatalogue.load(drl).getSymptoms());
+        Assertions.assertFalse(symptoms.isEmpty(), "No symptoms in " + drl);
+        return symptoms;
+    }
+
+    private static BitSetTriageEvaluator bitset(File drl) {
+        BitSetTriageEvaluator bitset = new BitSetTriageEvaluator();
+        bitset.setDrlPath(drl.getPath());
+        bitset.init();
+        return bitset;
+    }
+
+    // 0-6 catalogue symptoms, sometimes repeated, sometimes with a name no rule knows
+    private Patient randomPatient(Random random, String id, List<String> symptoms, List<String> flowcharts) {
+        Patient patient = new Patient(id, random.nextInt(16));
+        int count = random.nextInt(7);
+        for (int i = 0; i < count; i++) {
+            patient.addSymptom(new Symptom(symptoms.get(random.nextInt(symptoms.size()))));
+        }
+        if (random.nextInt(10) == 0) {
+            patient.addSymptom(new Symptom("Not a flowchart symptom"));
+        }
+        if (!flowcharts.isEmpty() && random.nextInt(4) != 0) {
+            patient.setPresentingFlowchart(flowcharts.get(random.nextInt(flowcharts.size())));
+        }
+        return patient;
+    }
+}
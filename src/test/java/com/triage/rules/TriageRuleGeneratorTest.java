@@ -0,0 +1,182 @@
+package com.triage.rules;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental regeneration against a full one, on a small PDF laid out the way
+ * the parser reads the ICTS flowcharts: after any edit, {@code regenerate} must
+ * write exactly the DRL {@code generate} writes, re-reading only the segments
+ * around the changed pages.
+ */
+public class TriageRuleGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void editOnAPageSharedByTwoSegments() throws IOException {
+        Document original = flowcharts("Choking symptom");
+        // Page 3 ends Chest pain and starts Headache
+        Document edited = flowcharts("Stridor at rest");
+
+        List<String> reparsed = assertRegeneratesAsGenerated(original, edited);
+        Assertions.assertEquals(List.of("Chest pain flowchart", "Headache flowchart"), reparsed);
+    }
+
+    @Test
+    public void newTitleOnAContinuationPage() throws IOException {
+        Document original = flowcharts("Choking symptom");
+        Document edited = flowcharts("Choking symptom");
+        edited.pages.set(1, new Page()
+                .title("Burns and scalds flowchart")
+                .block(2, "Full thickness burn")
+                .block(4, "Small superficial burn", "Choking symptom"));
+
+        List<String> reparsed = assertRegeneratesAsGenerated(original, edited);
+        Assertions.assertEquals(List.of("Chest pain flowchart", "Burns and scalds flowchart"), reparsed);
+    }
+
+    @Test
+    public void unchangedPdfIsUpToDate() throws IOException {
+        File pdf = flowcharts("Choking symptom").save(tempDir.resolve("icts.pdf").toFile());
+        File drl = tempDir.resolve("triage.drl").toFile();
+        TriageRuleGenerator generator = new TriageRuleGenerator();
+        generator.generate(pdf.getPath(), drl.getPath());
+
+        Assertions.assertTrue(generator.isUpToDate(pdf.getPath(), drl.getPath()));
+        Assertions.assertEquals(List.of(), generator.regenerate(pdf.getPath(), drl.getPath()));
+    }
+
+    // Generate from the original, regenerate from the edit, and compare with a
+    // full generate of the edit
+    private List<String> assertRegeneratesAsGenerated(Document original, Document edited) throws IOException {
+        File pdf = tempDir.resolve("icts.pdf").toFile();
+        File incremental = tempDir.resolve("incremental/triage.drl").toFile();
+        File full = tempDir.resolve("full/triage.drl").toFile();
+
+        original.save(pdf);
+        new TriageRuleGenerator().generate(pdf.getPath(), incremental.getPath());
+        String before = Files.readString(incremental.toPath());
+
+        edited.save(pdf);
+        List<String> reparsed = new TriageRuleGenerator().regenerate(pdf.getPath(), incremental.getPath());
+        new TriageRuleGenerator().generate(pdf.getPath(), full.getPath());
+
+        String expected = Files.readString(full.toPath());
+        Assertions.assertNotEquals(before, expected, "Edit did not change the rules");
+        Assertions.assertEquals(expected, Files.readString(incremental.toPath()));
+        Assertions.assertEquals(RuleManifest.read(RuleManifest.manifestFileFor(full)).getPageHashes(),
+                RuleManifest.read(RuleManifest.manifestFileFor(incremental)).getPageHashes());
+        return reparsed;
+    }
+
+    // Four flowcharts over five pages; page 2 continues Chest pain and page 3
+    // holds its last block above the Headache title
+    private static Document flowcharts(String sharedPageSymptom) {
+        Document document = new Document();
+        document.pages.add(new Page()
+                .title("Chest pain flowchart")
+                .block(1, "Airway compromise", "Shock")
+                .block(2, "Cardiac pain")
+                .block(3, "Pleuritic pain", "Moderate pain"));
+        document.pages.add(new Page()
+                .block(4, "Mild pain")
+                .block(5, "Recent problem"));
+        document.pages.add(new Page()
+                .block(4, sharedPageSymptom)
+                .title("Headache flowchart")
+                .block(1, "Airway compromise")
+                .block(3, "Headache with vomiting", sharedPageSymptom));
+        document.pages.add(new Page()
+                .title("Limb problems flowchart")
+                .block(2, "Gross deformity")
+                .block(4, "Mild pain"));
+        document.pages.add(new Page()
+                .title("Wounds flowchart")
+                .block(3, "Moderate pain")
+                .block(5, "Recent problem"));
+        return document;
+    }
+
+    private static final class Document {
+        final List<Page> pages = new ArrayList<>();
+
+        File save(File file) throws IOException {
+            try (PDDocument pdf = new PDDocument()) {
+                for (int i = 0; i < pages.size(); i++) {
+                    PDPage page = new PDPage(PDRectangle.A4);
+                    pdf.addPage(page);
+                    try (PDPageContentStream content = new PDPageContentStream(pdf, page)) {
+                        // Header and footer, which the parser skips
+                        text(content, 300, 30, "Irish Children's Triage System");
+                        text(content, 300, 800, "Page " + (i + 1));
+                        for (Line line : pages.get(i).lines) {
+                            text(content, line.x, line.y, line.text);
+                        }
+                    }
+                }
+                pdf.save(file);
+            }
+            return file;
+        }
+
+        // y from the top of the page, as the parser sees it
+        private static void text(PDPageContentStream content, float x, float y, String text) throws IOException {
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA, 10);
+            content.newLineAtOffset(x, PDRectangle.A4.getHeight() - y);
+            content.showText(text);
+            content.endText();
+        }
+    }
+
+    /** Lines placed where the parser looks for titles, symptoms, categories and "No". */
+    private static final class Page {
+        final List<Line> lines = new ArrayList<>();
+        private float y = 52;
+
+        Page title(String title) {
+            lines.add(new Line(48, y, title));
+            y = Math.max(y + 16, 110);
+            return this;
+        }
+
+        Page block(int category, String... symptoms) {
+            for (String symptom : symptoms) {
+                lines.add(new Line(60, y, symptom));
+                y += 12;
+            }
+            lines.add(new Line(500, y, String.valueOf(category)));
+            y += 12;
+            lines.add(new Line(200, y, "No"));
+            y += 12;
+            return this;
+        }
+    }
+
+    private static final class Line {
+        final float x;
+        final float y;
+        final String text;
+
+        Line(float x, float y, String text) {
+            this.x = x;
+            this.y = y;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.triage.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slots, the bounded queue behind them, and the extra slots a batch borrows.
+ */
+public class AdmissionLimiterTest {
+
+    @Test
+    public void slotsAreReusedOnceReleased() {
+        AdmissionLimiter limiter = new AdmissionLimiter(2, 0, 0, 1);
+        limiter.acquire();
+        limiter.acquire();
+        Assertions.assertEquals(2, limiter.getActive());
+
+        limiter.release();
+        Assertions.assertEquals(1, limiter.getActive());
+        limiter.acquire();
+        Assertions.assertEquals(2, limiter.getActive());
+    }
+
+    @Test
+    public void fullQueueTurnsCallersAway() {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 0, 5000, 7);
+        limiter.acquire();
+
+        TriageOverloadedException e = Assertions.assertThrows(TriageOverloadedException.class, limiter::acquire);
+        Assertions.assertEquals(7, e.getRetryAfterSeconds());
+        Assertions.assertEquals(0, limiter.getQueued());
+        Assertions.assertEquals(1, limiter.getActive());
+    }
+
+    @Test
+    public void queuedCallerTimesOut() {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 1, 50, 3);
+        limiter.acquire();
+
+        TriageOverloadedException e = Assertions.assertThrows(TriageOverloadedException.class, limiter::acquire);
+        Assertions.assertEquals(3, e.getRetryAfterSeconds());
+        Assertions.assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void queuedCallerIsAdmittedOnRelease() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 1, 10_000, 1);
+        limiter.acquire();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(limiter::acquire);
+        while (limiter.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        // A second waiter finds the queue full
+        Assertions.assertThrows(TriageOverloadedException.class, limiter::acquire);
+
+        limiter.release();
+        waiting.get(5, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, limiter.getQueued());
+        Assertions.assertEquals(1, limiter.getActive());
+    }
+
+    @Test
+    public void extraSlotsTakeOnlyWhatIsFree() {
+        AdmissionLimiter limiter = new AdmissionLimiter(4, 0, 0, 1);
+        limiter.acquire();
+
+        Assertions.assertEquals(3, limiter.tryAcquireExtra(10));
+        Assertions.assertEquals(0, limiter.tryAcquireExtra(1));
+        Assertions.assertEquals(4, limiter.getActive());
+
+        limiter.release(3);
+        Assertions.assertEquals(1, limiter.getActive());
+        Assertions.assertEquals(2, limiter.tryAcquireExtra(2));
+    }
+
+    @Test
+    public void extraSlotsNeverOvertakeAQueuedCaller() throws Exception {
+        AdmissionLimiter limiter = new AdmissionLimiter(1, 1, 10_000, 1);
+        limiter.acquire();
+
+        CompletableFuture<Void> waiting = CompletableFuture.runAsync(limiter::acquire);
+        while (limiter.getQueued() == 0) {
+            Thread.sleep(1);
+        }
+        limiter.release();
+        waiting.get(5, TimeUnit.SECONDS);
+        // The slot went to the waiter, not to a batch asking for more
+        Assertions.assertEquals(0, limiter.tryAcquireExtra(1));
+        Assertions.assertEquals(1, limiter.getActive());
+    }
+}
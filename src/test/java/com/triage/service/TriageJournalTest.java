@@ -0,0 +1,213 @@
+package com.triage.service;
+
+import com.triage.model.Patient;
+import com.triage.model.Symptom;
+import com.triage.model.TriageColor;
+import com.triage.model.TriageResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recovery of the triage journal from a crash and from a write that failed
+ * partway, e.g. on a full disk: neither may leave the journal unreplayable.
+ * Nor may closing it lose an entry it already accepted.
+ */
+public class TriageJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void tornTailIsSkippedAndCutOffOnRestart() throws IOException {
+        TriageJournal journal = open(FsyncPolicy.ALWAYS);
+        appendAll(journal, 0, 10);
+        journal.close();
+
+        // A crash in the middle of the next write
+        Path newest = newestSegment();
+        Files.write(newest, "{\"sequence\":11,\"source\":\"ap".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        assertSequences(10);
+
+        journal = open(FsyncPolicy.ALWAYS);
+        appendAll(journal, 10, 5);
+        journal.close();
+
+        assertSequences(15);
+        Assertions.assertTrue(Files.readString(newest).endsWith("\n"), "Torn line left in " + newest);
+    }
+
+    @Test
+    public void failedWriteIsCutOffTheSegmentItWasWrittenTo() throws IOException {
+        AtomicBoolean failed = new AtomicBoolean();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TriageJournal journal = new TriageJournal(directory, FsyncPolicy.ALWAYS, 100, 1 << 20, 1000, registry) {
+            @Override
+            void write(FileChannel channel, ByteBuffer bytes) throws IOException {
+                String batch = StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+                if (batch.contains("\"patientId\":\"P10\"") && failed.compareAndSet(false, true)) {
+                    // Half the batch reaches the file, then the disk is full
+                    ByteBuffer half = bytes.duplicate();
+                    half.limit(bytes.position() + bytes.remaining() / 2);
+                    super.write(channel, half);
+                    throw new IOException("No space left on device");
+                }
+                super.write(channel, bytes);
+            }
+        };
+        appendAll(journal, 0, 10);
+        awaitWritten(10);
+        appendAll(journal, 10, 3);
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!failed.get() || registry.get("triage.journal.failed").counter().count() == 0) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Journal writer did not fail the write");
+            Thread.onSpinWait();
+        }
+        appendAll(journal, 13, 4);
+        journal.close();
+
+        // The failed batch is gone, its sequence numbers skipped, and later batches went to a new segment
+        int lost = (int) registry.get("triage.journal.failed").counter().count();
+        Assertions.assertTrue(lost > 0, "No write failed");
+        List<TriageJournalEntry> entries = TriageJournalReader.readAll(directory.toFile());
+        Assertions.assertEquals(17 - lost, entries.size());
+        long previous = 0;
+        for (TriageJournalEntry entry : entries) {
+            Assertions.assertNotEquals("P10", entry.getPatientId());
+            Assertions.assertTrue(entry.getSequence() > previous);
+            previous = entry.getSequence();
+        }
+        Assertions.assertEquals(17, previous);
+        List<Path> segments = TriageJournalReader.segments(directory);
+        Assertions.assertTrue(segments.size() >= 2, "Failed segment was not abandoned");
+        Assertions.assertTrue(Files.readString(segments.get(0)).endsWith("\n"), "Failed batch left a torn line");
+    }
+
+    @Test
+    public void tornLineInAnOlderSegmentIsSkipped() throws IOException {
+        TriageJournal journal = open(FsyncPolicy.ALWAYS);
+        appendAll(journal, 0, 3);
+        journal.close();
+        // As left by a failed write the writer could not truncate
+        Files.write(newestSegment(), "{\"sequence\":4,\"sou".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+        Files.writeString(directory.resolve(TriageJournalReader.segmentName(5)),
+                TriageJournalReader.MAPPER.writeValueAsString(entry(5)) + "\n");
+
+        List<TriageJournalEntry> entries = TriageJournalReader.readAll(directory.toFile());
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 5L), entries.stream().map(TriageJournalEntry::getSequence).toList());
+    }
+
+    @Test
+    public void appendRacingCloseIsWrittenOrRefused() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TriageJournal journal = new TriageJournal(directory, FsyncPolicy.ALWAYS, 100, 1 << 20, 1000, registry) {
+            @Override
+            void enqueue(TriageJournalEntry entry) {
+                if ("P3".equals(entry.getPatientId())) {
+                    // close() runs to the end after append has seen the journal open
+                    Thread closer = Thread.ofPlatform().start(this::close);
+                    try {
+                        closer.join();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                super.enqueue(entry);
+            }
+        };
+        appendAll(journal, 0, 3);
+        boolean accepted = journal.append(entry(3));
+
+        Assertions.assertEquals(accepted ? 4 : 3, TriageJournalReader.readAll(directory.toFile()).size());
+        Assertions.assertFalse(journal.append(entry(4)), "Closed journal took an entry");
+        Assertions.assertEquals(0, registry.get("triage.journal.pending").gauge().value());
+    }
+
+    @Test
+    public void everyAcceptedEntryIsWrittenWhenClosedMidAppend() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            Path roundDirectory = Files.createDirectory(directory.resolve("round-" + round));
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            TriageJournal journal = new TriageJournal(roundDirectory, FsyncPolicy.NEVER, 100, 1 << 20, 1 << 20,
+                    registry);
+            AtomicInteger accepted = new AtomicInteger();
+            CountDownLatch started = new CountDownLatch(4);
+            List<Thread> appenders = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int from = t * 1_000_000;
+                appenders.add(Thread.ofPlatform().start(() -> {
+                    started.countDown();
+                    for (int i = from; journal.append(entry(i)); i++) {
+                        accepted.incrementAndGet();
+                    }
+                }));
+            }
+            started.await();
+            Thread.sleep(1);
+            journal.close();
+            for (Thread appender : appenders) {
+                appender.join();
+            }
+
+            Assertions.assertEquals(accepted.get(), TriageJournalReader.readAll(roundDirectory.toFile()).size(),
+                    "Accepted entries missing from the journal in round " + round);
+            Assertions.assertEquals(0, registry.get("triage.journal.pending").gauge().value());
+        }
+    }
+
+    private TriageJournal open(FsyncPolicy fsync) throws IOException {
+        return new TriageJournal(directory, fsync, 100, 1 << 20, 1000, new SimpleMeterRegistry());
+    }
+
+    private static void appendAll(TriageJournal journal, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            Assertions.assertTrue(journal.append(entry(i)), "Entry " + i + " not queued");
+        }
+    }
+
+    private static TriageJournalEntry entry(int i) {
+        Patient patient = new Patient("P" + i, i % 16);
+        patient.addSymptom(new Symptom("Airway compromise"));
+        TriageJournalEntry entry = new TriageJournalEntry(TriageJournalService.SOURCE_API, patient,
+                new TriageResult(TriageColor.RED), "0000");
+        entry.setSequence(i);
+        return entry;
+    }
+
+    private void assertSequences(int count) throws IOException {
+        List<TriageJournalEntry> entries = TriageJournalReader.readAll(directory.toFile());
+        Assertions.assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            Assertions.assertEquals(i + 1, entries.get(i).getSequence());
+        }
+    }
+
+    private Path newestSegment() throws IOException {
+        List<Path> segments = TriageJournalReader.segments(directory);
+        return segments.get(segments.size() - 1);
+    }
+
+    private void awaitWritten(int count) throws IOException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (TriageJournalReader.readAll(directory.toFile()).size() < count) {
+            Assertions.assertTrue(System.currentTimeMillis() < deadline, "Journal writer did not catch up");
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.triage.service;
+
+import com.triage.model.TriageColor;
+import com.triage.model.TriageResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queue order, re-triage and discharge in one department, and departments
+ * only being created by an admission.
+ */
+public class WaitingRoomTest {
+
+    @Test
+    public void mostUrgentFirstThenByArrival() {
+        WaitingRoom room = new WaitingRoom("ed", Runnable::run);
+        room.admit("A", TriageColor.GREEN);
+        room.admit("B", TriageColor.ORANGE);
+        room.admit("C", TriageColor.GREEN);
+        room.admit("D", TriageColor.RED);
+        room.admit("E", TriageColor.BLUE);
+
+        Assertions.assertEquals(List.of("D", "B", "A", "C", "E"), ids(room));
+        Assertions.assertEquals(5, room.size());
+    }
+
+    @Test
+    public void retriagedPatientKeepsTheirArrival() {
+        WaitingRoom room = new WaitingRoom("ed", Runnable::run);
+        room.admit("A", TriageColor.GREEN);
+        room.admit("B", TriageColor.YELLOW);
+        room.admit("C", TriageColor.YELLOW);
+
+        WaitingPatient moved = room.reprioritise("A", TriageColor.YELLOW);
+        Assertions.assertEquals(TriageColor.YELLOW, moved.getTriageColor());
+        // A arrived first, so goes ahead of the yellows who arrived after
+        Assertions.assertEquals(List.of("A", "B", "C"), ids(room));
+
+        // Admitting a waiting patient again re-triages them in place
+        room.admit("C", TriageColor.RED);
+        Assertions.assertEquals(List.of("C", "A", "B"), ids(room));
+        Assertions.assertEquals(3, room.size());
+        Assertions.assertNull(room.reprioritise("Z", TriageColor.RED));
+    }
+
+    @Test
+    public void dischargedPatientLeavesTheQueue() {
+        WaitingRoom room = new WaitingRoom("ed", Runnable::run);
+        room.admit("A", TriageColor.ORANGE);
+        room.admit("B", TriageColor.ORANGE);
+        room.admit("C", TriageColor.GREEN);
+
+        Assertions.assertEquals("A", room.discharge("A").getPatientId());
+        Assertions.assertEquals(List.of("B", "C"), ids(room));
+        Assertions.assertNull(room.get("A"));
+        Assertions.assertNull(room.discharge("A"));
+        Assertions.assertEquals(2, room.size());
+    }
+
+    @Test
+    public void onlyAdmittingCreatesADepartment() {
+        WaitingRoomService service = new WaitingRoomService(new SimpleMeterRegistry());
+        try {
+            Assertions.assertNull(service.subscribe("nowhere"));
+            Assertions.assertTrue(service.getPatients("nowhere").isEmpty());
+            Assertions.assertNull(service.discharge("nowhere", "A"));
+            Assertions.assertTrue(service.getDepartments().isEmpty());
+
+            service.admit("ed", "A", new TriageResult(TriageColor.YELLOW));
+            Assertions.assertEquals(Map.of("ed", 1), service.getDepartments());
+            Assertions.assertNotNull(service.subscribe("ed"));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static List<String> ids(WaitingRoom room) {
+        return room.list().stream().map(WaitingPatient::getPatientId).toList();
+    }
+}